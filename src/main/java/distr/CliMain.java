@@ -3,8 +3,13 @@ package distr;
 import distr.cli.commands.AddNodeCommand;
 import distr.cli.commands.BenchCommand;
 import distr.cli.commands.DumpCommand;
+import distr.cli.commands.FailoverBenchCommand;
 import distr.cli.commands.GetCommand;
 import distr.cli.commands.ListNodesCommand;
+import distr.cli.commands.ListShardsCommand;
+import distr.cli.commands.MDeleteCommand;
+import distr.cli.commands.MGetCommand;
+import distr.cli.commands.MPutCommand;
 import distr.cli.commands.PutCommand;
 import distr.cli.commands.RemoveNodeCommand;
 import distr.cli.commands.SetLeaderCommand;
@@ -12,7 +17,12 @@ import distr.cli.commands.SetReplicationCommand;
 import distr.cli.commands.SetReplicationDelayCommand;
 import distr.cli.commands.SetRfCommand;
 import distr.cli.commands.SetSemiSyncAcksCommand;
+import distr.cli.commands.SetShardsCommand;
+import distr.cli.commands.StatsCommand;
+import distr.cli.commands.StoreBenchCommand;
+import distr.cli.commands.WritePathBenchCommand;
 import distr.cli.commands.DeleteCommand;
+import distr.cli.commands.ReplBenchCommand;
 import distr.cli.commands.ReplCommand;
 
 import picocli.CommandLine;
@@ -33,11 +43,21 @@ import java.nio.file.Path;
                 SetRfCommand.class,
                 SetSemiSyncAcksCommand.class,
                 SetReplicationDelayCommand.class,
+                SetShardsCommand.class,
+                ListShardsCommand.class,
                 PutCommand.class,
                 GetCommand.class,
                 DumpCommand.class,
                 DeleteCommand.class,
+                MPutCommand.class,
+                MGetCommand.class,
+                MDeleteCommand.class,
+                StatsCommand.class,
                 BenchCommand.class,
+                FailoverBenchCommand.class,
+                ReplBenchCommand.class,
+                WritePathBenchCommand.class,
+                StoreBenchCommand.class,
                 ReplCommand.class
         }
 )
@@ -1,13 +1,20 @@
 package distr;
 
+import distr.common.WireFormat;
+import distr.node.ExecutionMode;
+import distr.node.FsyncPolicy;
+import distr.node.NodeConfig;
 import distr.node.NodeContext;
 import distr.node.NodeServer;
+import distr.node.StorageEngine;
+import distr.node.Transport;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,12 +31,73 @@ public final class NodeMain implements Runnable {
     @Option(names = {"--port"}, required = true)
     private int port;
 
+    @Option(names = {"--executor"}, defaultValue = "cached", description = "cached or virtual")
+    private String executor;
+
+    @Option(names = {"--max-connections"}, defaultValue = "10000", description = "Maximum concurrently served connections")
+    private int maxConnections;
+
+    @Option(names = {"--transport"}, defaultValue = "blocking", description = "blocking or nio")
+    private String transport;
+
+    @Option(names = {"--peer-wire"}, defaultValue = "binary", description = "Replication wire format: binary or json")
+    private String peerWire;
+
+    @Option(names = {"--data-dir"}, description = "Directory for the write-ahead log; in-memory only when omitted")
+    private Path dataDir;
+
+    @Option(names = {"--fsync"}, defaultValue = "group", description = "WAL fsync policy: always, group, interval or none")
+    private String fsync;
+
+    @Option(names = {"--snapshot-interval-ms"}, defaultValue = "60000", description = "Snapshot period for --data-dir; 0 disables snapshots")
+    private long snapshotIntervalMs;
+
+    @Option(names = {"--write-batch-us"}, defaultValue = "0", description = "Leader write-combining window in microseconds; 0 disables")
+    private long writeBatchUs;
+
+    @Option(names = {"--write-batch-max"}, defaultValue = "256", description = "Maximum client writes combined into one replication unit")
+    private int writeBatchMax;
+
+    @Option(names = {"--election-timeout-ms"}, defaultValue = "300", description = "Leader heartbeat timeout before an election; 0 disables automatic failover")
+    private long electionTimeoutMs;
+
+    @Option(names = {"--lease-reads"}, negatable = true, defaultValue = "true", fallbackValue = "true",
+            description = "Serve linearizable reads under the leader lease; --no-lease-reads checks a quorum on every read")
+    private boolean leaseReads;
+
+    @Option(names = {"--gossip-interval-ms"}, defaultValue = "200", description = "Interval between cluster config gossip rounds; 0 disables gossip")
+    private long gossipIntervalMs;
+
+    @Option(names = {"--storage"}, defaultValue = "heap", description = "Storage engine: heap, offheap or lsm (requires --data-dir)")
+    private String storage;
+
+    @Option(names = {"--tombstone-reap-interval-ms"}, defaultValue = "5000",
+            description = "Interval between passes that drop tombstones all replicas have acknowledged; 0 disables reaping")
+    private long tombstoneReapIntervalMs;
+
     @Override
     public void run() {
-        NodeContext context = new NodeContext(nodeId, host, port);
-        NodeServer server = new NodeServer(context);
+        ExecutionMode executionMode = ExecutionMode.fromString(executor);
+        Transport serverTransport = Transport.fromString(transport);
+        WireFormat peerWireFormat = WireFormat.fromString(peerWire);
+        FsyncPolicy fsyncPolicy = FsyncPolicy.fromString(fsync);
+        StorageEngine storageEngine = StorageEngine.fromString(storage);
+        if (executionMode == null || serverTransport == null || peerWireFormat == null || fsyncPolicy == null || storageEngine == null
+                || maxConnections < 1
+                || snapshotIntervalMs < 0 || writeBatchUs < 0 || writeBatchMax < 1 || electionTimeoutMs < 0
+                || gossipIntervalMs < 0 || tombstoneReapIntervalMs < 0) {
+            throw new IllegalArgumentException("Invalid executor, transport, peer wire format, fsync policy, storage engine, max connections, snapshot interval, write batching, election timeout, gossip interval or tombstone reap interval");
+        }
+        if (storageEngine == StorageEngine.LSM && dataDir == null) {
+            throw new IllegalArgumentException("--storage lsm requires --data-dir");
+        }
         LOG.info("Starting node " + nodeId + " on " + host + ":" + port);
         try {
+            NodeContext context = new NodeContext(nodeId, host, port,
+                    new NodeConfig(executionMode, maxConnections, serverTransport, peerWireFormat, dataDir, fsyncPolicy,
+                            snapshotIntervalMs, writeBatchUs, writeBatchMax, electionTimeoutMs, leaseReads,
+                            gossipIntervalMs, storageEngine, tombstoneReapIntervalMs));
+            NodeServer server = new NodeServer(context);
             server.start();
         } catch (IOException e) {
             LOG.log(Level.SEVERE, "Node failed", e);
@@ -5,11 +5,15 @@ import distr.common.NodeInfo;
 import distr.common.ReplicationMode;
 import distr.common.Constants;
 import distr.common.JsonUtil;
+import distr.common.ShardInfo;
+import distr.common.Sharding;
 
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -21,7 +25,9 @@ public final class CliState {
     private int semiSyncAcks = 1;
     private int delayMinMs = 0;
     private int delayMaxMs = 0;
+    private int shardCount = 0;
     private String defaultClientId = "cli";
+    private long configEpoch = 0L;
 
     public Map<String, NodeInfo> getNodes() {
         return nodes;
@@ -87,6 +93,18 @@ public final class CliState {
         this.delayMaxMs = max;
     }
 
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public ShardInfo shardFor(String key) {
+        return toClusterState().shardFor(key);
+    }
+
     public String getDefaultClientId() {
         return defaultClientId;
     }
@@ -95,17 +113,20 @@ public final class CliState {
         this.defaultClientId = defaultClientId;
     }
 
+    public long getConfigEpoch() {
+        return configEpoch;
+    }
+
+    public long nextConfigEpoch() {
+        configEpoch = Math.max(configEpoch + 1, System.currentTimeMillis());
+        return configEpoch;
+    }
+
     public ClusterState toClusterState() {
-        ClusterState state = new ClusterState();
-        for (NodeInfo node : nodes.values()) {
-            state.upsertNode(node);
-        }
-        state.setLeaderNodeId(leaderNodeId);
-        state.setReplicationMode(replicationMode);
-        state.setRf(rf);
-        state.setSemiSyncAcks(semiSyncAcks);
-        state.setDelayRangeMs(delayMinMs, delayMaxMs);
-        return state;
+        List<ShardInfo> shards = shardCount > 0
+                ? Sharding.assign(new ArrayList<>(nodes.keySet()), shardCount, rf)
+                : List.of();
+        return new ClusterState(configEpoch, nodes.values(), leaderNodeId, replicationMode, rf, semiSyncAcks, delayMinMs, delayMaxMs, shards);
     }
 
     public ObjectNode toJson() {
@@ -124,7 +145,9 @@ public final class CliState {
         root.put(Constants.SEMI_SYNC_ACKS, semiSyncAcks);
         root.put(Constants.DELAY_MIN_MS, delayMinMs);
         root.put(Constants.DELAY_MAX_MS, delayMaxMs);
+        root.put(Constants.SHARD_COUNT, shardCount);
         root.put(Constants.CLIENT_ID, defaultClientId);
+        root.put(Constants.CONFIG_EPOCH, configEpoch);
         return root;
     }
 
@@ -146,7 +169,9 @@ public final class CliState {
         state.semiSyncAcks = root.path(Constants.SEMI_SYNC_ACKS).asInt(1);
         state.delayMinMs = root.path(Constants.DELAY_MIN_MS).asInt(0);
         state.delayMaxMs = root.path(Constants.DELAY_MAX_MS).asInt(0);
+        state.shardCount = root.path(Constants.SHARD_COUNT).asInt(0);
         state.defaultClientId = root.path(Constants.CLIENT_ID).asText("cli");
+        state.configEpoch = root.path(Constants.CONFIG_EPOCH).asLong(0L);
         return state;
     }
 }
@@ -12,7 +12,13 @@ public record BenchResult(
         double p50Ms,
         double p75Ms,
         double p95Ms,
-        double p99Ms
+        double p99Ms,
+        int serverPeakThreads,
+        String wireFormat,
+        String durability,
+        int batchSize,
+        int shards,
+        String readMode
 ) {
     public String toCsvRow() {
         return String.join(",",
@@ -27,7 +33,13 @@ public record BenchResult(
                 String.format("%.3f", p50Ms),
                 String.format("%.3f", p75Ms),
                 String.format("%.3f", p95Ms),
-                String.format("%.3f", p99Ms)
+                String.format("%.3f", p99Ms),
+                Integer.toString(serverPeakThreads),
+                wireFormat,
+                durability,
+                Integer.toString(batchSize),
+                Integer.toString(shards),
+                readMode
         );
     }
 }
@@ -1,36 +1,88 @@
 package distr.cli.bench;
 
 import distr.cli.CliState;
+import distr.common.ClientConnection;
+import distr.common.ClientRequest;
+import distr.common.ClientResponse;
+import distr.common.ConnectionPool;
 import distr.common.Constants;
 import distr.common.JsonUtil;
-import distr.common.NetworkClient;
+import distr.common.Message;
 import distr.common.NodeInfo;
+import distr.common.ShardInfo;
+import distr.common.Sharding;
+import distr.common.WireFormat;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
-public final class BenchRunner {
+public final class BenchRunner implements AutoCloseable {
     private final CliState state;
     private final NodeInfo leader;
+    private final NodeInfo[] shardLeaders;
+    private final NodeInfo[][] readers;
+    private final ConnectionPool pool;
+    private final WireFormat wireFormat;
+    private final ReadMode readMode;
+    private final Long maxStalenessMs;
 
-    public BenchRunner(CliState state) {
+    public BenchRunner(CliState state, int connections, WireFormat wireFormat) {
+        this(state, connections, wireFormat, ReadMode.LEADER, null);
+    }
+
+    public BenchRunner(CliState state, int connections, WireFormat wireFormat, ReadMode readMode, Long maxStalenessMs) {
         this.state = state;
+        List<ShardInfo> shards = state.toClusterState().getShards();
+        this.shardLeaders = new NodeInfo[shards.size()];
+        this.readers = new NodeInfo[Math.max(1, shards.size())][];
+        for (int i = 0; i < shardLeaders.length; i++) {
+            String shardLeaderId = shards.get(i).leaderNodeId();
+            shardLeaders[i] = shardLeaderId == null ? null : state.getNode(shardLeaderId).orElse(null);
+            readers[i] = shards.get(i).replicas().stream()
+                    .map(replica -> state.getNode(replica).orElse(null))
+                    .filter(Objects::nonNull)
+                    .toArray(NodeInfo[]::new);
+        }
+        if (shards.isEmpty()) {
+            readers[0] = state.getNodes().values().toArray(NodeInfo[]::new);
+        }
+        this.readMode = readMode;
+        this.maxStalenessMs = maxStalenessMs;
         String leaderId = state.getLeaderNodeId();
-        this.leader = leaderId == null ? null : state.getNode(leaderId).orElse(null);
+        NodeInfo globalLeader = leaderId == null ? null : state.getNode(leaderId).orElse(null);
+        this.leader = globalLeader != null || shardLeaders.length == 0 ? globalLeader : shardLeaders[0];
+        this.pool = new ConnectionPool(connections, wireFormat);
+        this.wireFormat = wireFormat;
     }
 
-    public BenchResult run(String replicationMode, int rf, int k, int threads, double putRatio, long totalOps) {
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    public BenchResult run(String replicationMode, int rf, int k, int threads, double putRatio, long totalOps, int batchSize) {
         if (leader == null) {
             throw new IllegalStateException("Leader not set");
         }
+        for (NodeInfo shardLeader : shardLeaders) {
+            if (shardLeader == null) {
+                throw new IllegalStateException("Shard leader not set");
+            }
+        }
         long baseOps = totalOps / threads;
         long remainder = totalOps % threads;
         long[] latencies = new long[(int) totalOps];
@@ -40,6 +92,7 @@ public final class BenchRunner {
             offsets[i] = cursor;
             cursor += baseOps + (i < remainder ? 1 : 0);
         }
+        fetchStats();
         CountDownLatch latch = new CountDownLatch(threads);
         var executor = Executors.newFixedThreadPool(threads);
         long start = System.nanoTime();
@@ -49,15 +102,21 @@ public final class BenchRunner {
             final long offset = offsets[threadIndex];
             executor.execute(() -> {
                 ThreadLocalRandom random = ThreadLocalRandom.current();
+                String[] tokens = new String[readers.length];
                 for (int i = 0; i < opsForThread; i++) {
                     boolean isPut = random.nextDouble() < putRatio;
                     String key = "k" + random.nextInt(1_000_000);
                     long opStart = System.nanoTime();
-                    if (isPut) {
+                    if (batchSize > 1) {
+                        sendBatch(isPut, batchSize, "bench-" + threadIndex, tokens);
+                    } else if (isPut) {
                         String value = "v" + random.nextInt(1_000_000);
-                        sendPut(key, value, "bench-" + threadIndex);
+                        String token = sendPut(key, value, "bench-" + threadIndex);
+                        if (token != null) {
+                            tokens[shardIndex(key)] = token;
+                        }
                     } else {
-                        sendGet(key, "bench-" + threadIndex);
+                        sendGet(key, "bench-" + threadIndex, tokens[shardIndex(key)]);
                     }
                     long opEnd = System.nanoTime();
                     int index = (int) (offset + i);
@@ -80,6 +139,7 @@ public final class BenchRunner {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        JsonNode serverStats = fetchStats();
         double elapsedSec = (end - start) / 1_000_000_000.0;
         long total = baseOps * threads + remainder;
         LatencyStats stats = new LatencyStats(latencies);
@@ -95,34 +155,126 @@ public final class BenchRunner {
                 stats.p50Ms(),
                 stats.p75Ms(),
                 stats.p95Ms(),
-                stats.p99Ms()
+                stats.p99Ms(),
+                serverStats.path(Constants.PEAK_THREADS).asInt(-1),
+                wireFormat.toWire(),
+                serverStats.path(Constants.FSYNC_POLICY).asText("memory"),
+                batchSize,
+                shardLeaders.length,
+                readMode.toWire()
         );
     }
 
-    private void sendPut(String key, String value, String clientId) {
+    private JsonNode fetchStats() {
         ObjectNode request = JsonUtil.object();
-        request.put(Constants.TYPE, Constants.CLIENT_PUT);
-        request.put(Constants.REQUEST_ID, UUID.randomUUID().toString());
-        request.put(Constants.CLIENT_ID, clientId);
-        request.put(Constants.KEY, key);
-        request.put(Constants.VALUE, value);
+        request.put(Constants.TYPE, Constants.CLIENT_STATS);
+        request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
         try {
-            NetworkClient.sendRequest(leader.host(), leader.port(), request, Constants.DEFAULT_TIMEOUT_MS);
+            return send(leader, request).path(Constants.VALUE);
         } catch (IOException e) {
-            return;
+            return JsonUtil.object();
+        }
+    }
+
+    private ObjectNode send(NodeInfo node, ObjectNode request) throws IOException {
+        return pool.get(node.host(), node.port(), Constants.DEFAULT_TIMEOUT_MS).request(request, Constants.DEFAULT_TIMEOUT_MS);
+    }
+
+    private NodeInfo ownerOf(String key) {
+        return shardLeaders.length == 0 ? leader : shardLeaders[shardIndex(key)];
+    }
+
+    private int shardIndex(String key) {
+        return shardLeaders.length == 0 ? 0 : Sharding.shardOf(key, shardLeaders.length);
+    }
+
+    private NodeInfo readerOf(String key, int spread) {
+        if (readMode == ReadMode.LEADER || readMode == ReadMode.LINEARIZABLE) {
+            return ownerOf(key);
         }
+        NodeInfo[] candidates = readers[shardIndex(key)];
+        return candidates.length == 0 ? ownerOf(key) : candidates[spread % candidates.length];
     }
 
-    private void sendGet(String key, String clientId) {
+    private Long readBound() {
+        return switch (readMode) {
+            case LEADER -> null;
+            case LINEARIZABLE -> 0L;
+            case ANY, SESSION -> maxStalenessMs;
+        };
+    }
+
+    private String sendPut(String key, String value, String clientId) {
+        Message response = sendClient(ownerOf(key), new ClientRequest(Constants.CLIENT_PUT, ClientConnection.nextRequestId(), clientId, key, value));
+        return response instanceof ClientResponse written ? written.readToken() : null;
+    }
+
+    private void sendGet(String key, String clientId, String token) {
+        String readToken = readMode == ReadMode.SESSION ? token : null;
+        sendClient(readerOf(key, ThreadLocalRandom.current().nextInt(1 << 16)),
+                new ClientRequest(Constants.CLIENT_GET, ClientConnection.nextRequestId(), clientId, key, null, readToken, readBound()));
+    }
+
+    private void sendBatch(boolean isPut, int batchSize, String clientId, String[] tokens) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int spread = random.nextInt(1 << 16);
+        Map<Target, ObjectNode> requests = new LinkedHashMap<>();
+        Map<Target, Set<Integer>> shardsByTarget = new LinkedHashMap<>();
+        for (int i = 0; i < batchSize; i++) {
+            String key = "k" + random.nextInt(1_000_000);
+            int shard = shardIndex(key);
+            Target target = isPut ? new Target(ownerOf(key), -1) : new Target(readerOf(key, spread), shard);
+            ObjectNode request = requests.computeIfAbsent(target, owner -> batchRequest(isPut, clientId));
+            shardsByTarget.computeIfAbsent(target, owner -> new HashSet<>()).add(shard);
+            if (isPut) {
+                ((ObjectNode) request.get(Constants.ENTRIES)).put(key, "v" + random.nextInt(1_000_000));
+            } else {
+                ((ArrayNode) request.get(Constants.KEYS)).add(key);
+            }
+        }
+        for (Map.Entry<Target, ObjectNode> request : requests.entrySet()) {
+            Target target = request.getKey();
+            if (!isPut && readMode == ReadMode.SESSION && tokens[target.shard()] != null) {
+                request.getValue().put(Constants.READ_TOKEN, tokens[target.shard()]);
+            }
+            Long bound = readBound();
+            if (!isPut && bound != null) {
+                request.getValue().put(Constants.MAX_STALENESS_MS, bound);
+            }
+            try {
+                String token = send(target.node(), request.getValue()).path(Constants.READ_TOKEN).asText(null);
+                if (isPut && token != null) {
+                    for (int shard : shardsByTarget.get(target)) {
+                        tokens[shard] = token;
+                    }
+                }
+            } catch (IOException e) {
+                continue;
+            }
+        }
+    }
+
+    private ObjectNode batchRequest(boolean isPut, String clientId) {
         ObjectNode request = JsonUtil.object();
-        request.put(Constants.TYPE, Constants.CLIENT_GET);
-        request.put(Constants.REQUEST_ID, UUID.randomUUID().toString());
+        request.put(Constants.TYPE, isPut ? Constants.CLIENT_MPUT : Constants.CLIENT_MGET);
+        request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
         request.put(Constants.CLIENT_ID, clientId);
-        request.put(Constants.KEY, key);
+        if (isPut) {
+            request.putObject(Constants.ENTRIES);
+        } else {
+            request.putArray(Constants.KEYS);
+        }
+        return request;
+    }
+
+    private Message sendClient(NodeInfo node, ClientRequest request) {
         try {
-            NetworkClient.sendRequest(leader.host(), leader.port(), request, Constants.DEFAULT_TIMEOUT_MS);
+            return pool.get(node.host(), node.port(), Constants.DEFAULT_TIMEOUT_MS).request(request, Constants.DEFAULT_TIMEOUT_MS);
         } catch (IOException e) {
-            return;
+            return null;
         }
     }
+
+    private record Target(NodeInfo node, int shard) {
+    }
 }
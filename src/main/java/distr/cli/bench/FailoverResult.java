@@ -0,0 +1,25 @@
+package distr.cli.bench;
+
+public record FailoverResult(
+        int threads,
+        long durationMs,
+        long writesOk,
+        long writesFailed,
+        double maxGapMs,
+        double gapStartMs,
+        String leaderBefore,
+        String leaderAfter
+) {
+    public String toCsvRow() {
+        return String.join(",",
+                Integer.toString(threads),
+                Long.toString(durationMs),
+                Long.toString(writesOk),
+                Long.toString(writesFailed),
+                String.format("%.3f", maxGapMs),
+                String.format("%.3f", gapStartMs),
+                leaderBefore,
+                leaderAfter
+        );
+    }
+}
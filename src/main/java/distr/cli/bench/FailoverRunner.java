@@ -0,0 +1,172 @@
+package distr.cli.bench;
+
+import distr.cli.CliState;
+import distr.common.ClientConnection;
+import distr.common.ClusterState;
+import distr.common.ConnectionPool;
+import distr.common.Constants;
+import distr.common.JsonUtil;
+import distr.common.NodeInfo;
+import distr.common.ShardInfo;
+import distr.common.WireFormat;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class FailoverRunner implements AutoCloseable {
+    private static final long RETRY_PAUSE_MS = 10;
+    private final CliState state;
+    private final ClusterState cluster;
+    private final ConnectionPool pool;
+    private final ConcurrentHashMap<Integer, String> leaders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> downUntil = new ConcurrentHashMap<>();
+
+    public FailoverRunner(CliState state, WireFormat wireFormat) {
+        this.state = state;
+        this.cluster = state.toClusterState();
+        this.pool = new ConnectionPool(1, wireFormat);
+        for (ShardInfo shard : cluster.effectiveShards()) {
+            if (shard.leaderNodeId() != null) {
+                leaders.put(shard.shardId(), shard.leaderNodeId());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    public FailoverResult run(int threads, long durationMs, int timeoutMs) {
+        String leaderBefore = describeLeaders();
+        AtomicLong failed = new AtomicLong();
+        long[][] completions = new long[threads][];
+        CountDownLatch latch = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread thread = new Thread(() -> {
+                long[] done = new long[1024];
+                int count = 0;
+                long cursor = 0;
+                while (System.nanoTime() < end) {
+                    String key = "f" + ThreadLocalRandom.current().nextInt(1_000_000);
+                    ShardInfo shard = cluster.shardFor(key);
+                    NodeInfo target = pickTarget(shard, cursor++);
+                    if (target == null || !write(target, shard, key, timeoutMs)) {
+                        failed.incrementAndGet();
+                        pause();
+                        continue;
+                    }
+                    if (count == done.length) {
+                        done = Arrays.copyOf(done, count * 2);
+                    }
+                    done[count++] = System.nanoTime() - start;
+                }
+                completions[index] = Arrays.copyOf(done, count);
+                latch.countDown();
+            }, "failover-bench-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long[] all = Arrays.stream(completions).flatMapToLong(Arrays::stream).sorted().toArray();
+        long previous = all.length == 0 ? 0L : all[0];
+        long maxGap = 0L;
+        long gapStart = 0L;
+        for (long completion : all) {
+            if (completion - previous > maxGap) {
+                maxGap = completion - previous;
+                gapStart = previous;
+            }
+            previous = completion;
+        }
+        return new FailoverResult(threads, durationMs, all.length, failed.get(),
+                maxGap / 1_000_000.0, gapStart / 1_000_000.0, leaderBefore, describeLeaders());
+    }
+
+    private boolean write(NodeInfo target, ShardInfo shard, String key, int timeoutMs) {
+        ObjectNode request = JsonUtil.object();
+        request.put(Constants.TYPE, Constants.CLIENT_PUT);
+        request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
+        request.put(Constants.CLIENT_ID, "failover-bench");
+        request.put(Constants.KEY, key);
+        request.put(Constants.VALUE, "v" + System.nanoTime());
+        ObjectNode response;
+        try {
+            response = pool.get(target.host(), target.port(), timeoutMs).request(request, timeoutMs);
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            downUntil.put(target.nodeId(), System.currentTimeMillis() + Constants.PEER_RECONNECT_MAX_MS);
+            leaders.remove(shard.shardId(), target.nodeId());
+            return false;
+        }
+        if (Constants.STATUS_OK.equals(response.path(Constants.STATUS).asText())) {
+            leaders.put(shard.shardId(), target.nodeId());
+            return true;
+        }
+        String hint = response.path(Constants.LEADER_ID).asText(null);
+        if (Constants.ERROR_NOT_LEADER.equals(response.path(Constants.ERROR_CODE).asText())) {
+            if (hint != null && !hint.equals(target.nodeId()) && !isDown(hint)) {
+                leaders.put(shard.shardId(), hint);
+            } else {
+                leaders.remove(shard.shardId(), target.nodeId());
+            }
+        }
+        return false;
+    }
+
+    private NodeInfo pickTarget(ShardInfo shard, long cursor) {
+        String leader = leaders.get(shard.shardId());
+        if (leader != null && !isDown(leader)) {
+            return state.getNode(leader).orElse(null);
+        }
+        List<String> replicas = shard.replicas();
+        for (int i = 0; i < replicas.size(); i++) {
+            String candidate = replicas.get((int) ((cursor + i) % replicas.size()));
+            if (!isDown(candidate)) {
+                return state.getNode(candidate).orElse(null);
+            }
+        }
+        return null;
+    }
+
+    private boolean isDown(String nodeId) {
+        Long until = downUntil.get(nodeId);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    private String describeLeaders() {
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<Integer, String> entry : new TreeMap<>(leaders).entrySet()) {
+            parts.add(entry.getKey() + ":" + entry.getValue());
+        }
+        return String.join(" ", parts);
+    }
+
+    private static void pause() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(RETRY_PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package distr.cli.bench;
+
+public enum ReadMode {
+    LEADER,
+    ANY,
+    SESSION,
+    LINEARIZABLE;
+
+    public static ReadMode fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase()) {
+            case "leader" -> LEADER;
+            case "any" -> ANY;
+            case "session" -> SESSION;
+            case "linearizable" -> LINEARIZABLE;
+            default -> null;
+        };
+    }
+
+    public String toWire() {
+        return switch (this) {
+            case LEADER -> "leader";
+            case ANY -> "any";
+            case SESSION -> "session";
+            case LINEARIZABLE -> "linearizable";
+        };
+    }
+}
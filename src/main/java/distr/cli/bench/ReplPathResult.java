@@ -0,0 +1,31 @@
+package distr.cli.bench;
+
+public record ReplPathResult(
+        String wireFormat,
+        long totalOps,
+        int batchSize,
+        int valueSize,
+        double encodeNsPerOp,
+        double encodeBytesPerOp,
+        double decodeNsPerOp,
+        double decodeBytesPerOp,
+        double wireBytesPerOp,
+        double requestIdNsPerOp,
+        double requestIdBytesPerOp
+) {
+    public String toCsvRow() {
+        return String.join(",",
+                wireFormat,
+                Long.toString(totalOps),
+                Integer.toString(batchSize),
+                Integer.toString(valueSize),
+                String.format("%.1f", encodeNsPerOp),
+                String.format("%.1f", encodeBytesPerOp),
+                String.format("%.1f", decodeNsPerOp),
+                String.format("%.1f", decodeBytesPerOp),
+                String.format("%.1f", wireBytesPerOp),
+                String.format("%.1f", requestIdNsPerOp),
+                String.format("%.1f", requestIdBytesPerOp)
+        );
+    }
+}
@@ -0,0 +1,108 @@
+package distr.cli.bench;
+
+import distr.common.BinaryCodec;
+import distr.common.ClientConnection;
+import distr.common.Constants;
+import distr.common.EncodedOp;
+import distr.common.JsonCodec;
+import distr.common.MalformedMessageException;
+import distr.common.Message;
+import distr.common.ReplBatch;
+import distr.common.ReplOp;
+import distr.common.WireFormat;
+import distr.common.WireStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class ReplPathRunner {
+    private static final String ORIGIN = "n0";
+    private static final int KEY_SPACE = 10_000;
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long sink;
+
+    public ReplPathResult run(WireFormat wireFormat, int totalOps, int batchSize, int valueSize, int rounds)
+            throws JsonProcessingException, MalformedMessageException {
+        String[] keys = new String[KEY_SPACE];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key" + i;
+        }
+        String value = "v".repeat(valueSize);
+        long epoch = System.currentTimeMillis();
+        long seq = 0L;
+        ReplPathResult best = null;
+        for (int round = 0; round < rounds; round++) {
+            List<byte[]> frames = new ArrayList<>(totalOps / batchSize + 1);
+            long wireBytes = 0L;
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            List<EncodedOp> batch = new ArrayList<>(batchSize);
+            long baseSeq = seq;
+            for (int i = 0; i < totalOps; i++) {
+                seq++;
+                EncodedOp op = new EncodedOp(new ReplOp(Constants.PUT, keys[i % KEY_SPACE], seq, value));
+                if (wireFormat == WireFormat.JSON) {
+                    op.json();
+                } else {
+                    op.binary();
+                }
+                batch.add(op);
+                if (batch.size() == batchSize || i == totalOps - 1) {
+                    byte[] frame = WireStream.frameBatch(ORIGIN, epoch, baseSeq, 0L, batch, false, wireFormat);
+                    frames.add(frame);
+                    wireBytes += frame.length;
+                    batch.clear();
+                    baseSeq = seq;
+                }
+            }
+            long encodeNs = System.nanoTime() - start;
+            long encodeBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+            allocated = threads.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (byte[] frame : frames) {
+                Message message = wireFormat == WireFormat.JSON
+                        ? JsonCodec.decode(frame, 0, frame.length)
+                        : BinaryCodec.decode(Arrays.copyOfRange(frame, 4, frame.length));
+                if (message instanceof ReplBatch decoded) {
+                    for (ReplOp op : decoded.ops()) {
+                        sink += op.seq();
+                    }
+                }
+            }
+            long decodeNs = System.nanoTime() - start;
+            long decodeBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+            allocated = threads.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < totalOps; i++) {
+                sink += ClientConnection.nextRequestId().length();
+            }
+            long requestIdNs = System.nanoTime() - start;
+            long requestIdBytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+            ReplPathResult result = new ReplPathResult(
+                    wireFormat.toWire(),
+                    totalOps,
+                    batchSize,
+                    valueSize,
+                    encodeNs / (double) totalOps,
+                    encodeBytes / (double) totalOps,
+                    decodeNs / (double) totalOps,
+                    decodeBytes / (double) totalOps,
+                    wireBytes / (double) totalOps,
+                    requestIdNs / (double) totalOps,
+                    requestIdBytes / (double) totalOps
+            );
+            if (best == null || result.encodeNsPerOp() + result.decodeNsPerOp() < best.encodeNsPerOp() + best.decodeNsPerOp()) {
+                best = result;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,33 @@
+package distr.cli.bench;
+
+public record StoreBenchResult(
+        String engine,
+        long keys,
+        int valueBytes,
+        double loadOpsSec,
+        double getNs,
+        double heapMb,
+        double offHeapMb,
+        double diskMb,
+        long gcCount,
+        long gcTotalMs,
+        long gcMaxPauseMs,
+        long fullGcMs
+) {
+    public String toCsvRow() {
+        return String.join(",",
+                engine,
+                Long.toString(keys),
+                Integer.toString(valueBytes),
+                String.format("%.1f", loadOpsSec),
+                String.format("%.1f", getNs),
+                String.format("%.1f", heapMb),
+                String.format("%.1f", offHeapMb),
+                String.format("%.1f", diskMb),
+                Long.toString(gcCount),
+                Long.toString(gcTotalMs),
+                Long.toString(gcMaxPauseMs),
+                Long.toString(fullGcMs)
+        );
+    }
+}
@@ -0,0 +1,118 @@
+package distr.cli.bench;
+
+import distr.node.HeapNodeStore;
+import distr.node.LsmNodeStore;
+import distr.node.NodeStore;
+import distr.node.OffHeapNodeStore;
+import distr.node.StorageEngine;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+public final class StoreBenchRunner {
+    private static final double MB = 1024.0 * 1024.0;
+    private static final Logger NODE_LOG = Logger.getLogger("distr.node");
+
+    public StoreBenchResult run(StorageEngine engine, long keys, int valueBytes, long gets) throws IOException {
+        NODE_LOG.setLevel(Level.WARNING);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long baseline = settledHeap(memory);
+        AtomicLong gcCount = new AtomicLong();
+        AtomicLong gcTotalMs = new AtomicLong();
+        AtomicLong gcMaxMs = new AtomicLong();
+        NotificationListener listener = (Notification notification, Object handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                long duration = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+                gcCount.incrementAndGet();
+                gcTotalMs.addAndGet(duration);
+                gcMaxMs.accumulateAndGet(duration, Math::max);
+            }
+        };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+
+        Path dir = engine == StorageEngine.LSM ? Files.createTempDirectory("store-bench") : null;
+        NodeStore store = switch (engine) {
+            case HEAP -> new HeapNodeStore();
+            case OFFHEAP -> new OffHeapNodeStore();
+            case LSM -> new LsmNodeStore(dir, null);
+        };
+        if (store instanceof LsmNodeStore lsm) {
+            lsm.start();
+        }
+        String padding = "v".repeat(valueBytes);
+        long start = System.nanoTime();
+        for (long i = 0; i < keys; i++) {
+            store.applyPut("key" + i, value(padding, i), i + 1);
+        }
+        for (long i = 0; i < keys; i += 2) {
+            store.applyPut("key" + i, value(padding, keys + i), keys + i + 1);
+        }
+        double loadOpsSec = (keys + (keys + 1) / 2) / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long misses = 0;
+        start = System.nanoTime();
+        for (long i = 0; i < gets; i++) {
+            if (store.get("key" + random.nextLong(keys)) == null) {
+                misses++;
+            }
+        }
+        double getNs = (System.nanoTime() - start) / (double) Math.max(1L, gets);
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            try {
+                ((NotificationEmitter) collector).removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                continue;
+            }
+        }
+        long gcStart = System.nanoTime();
+        System.gc();
+        long fullGcMs = (System.nanoTime() - gcStart) / 1_000_000;
+        double heapMb = (settledHeap(memory) - baseline) / MB;
+        double offHeapMb = store.offHeapBytes() / MB;
+        double diskMb = store instanceof LsmNodeStore lsm ? lsm.diskBytes() / MB : 0.0;
+        if (misses > 0) {
+            throw new IllegalStateException("Store lost keys: " + misses + " misses");
+        }
+        if (dir != null) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        return new StoreBenchResult(engine.toWire(), keys, valueBytes, loadOpsSec, getNs, heapMb, offHeapMb, diskMb,
+                gcCount.get(), gcTotalMs.get(), gcMaxMs.get(), fullGcMs);
+    }
+
+    private static String value(String padding, long i) {
+        String id = Long.toString(i);
+        return id.length() >= padding.length() ? id : id + padding.substring(id.length());
+    }
+
+    private static long settledHeap(MemoryMXBean memory) {
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,23 @@
+package distr.cli.bench;
+
+public record WritePathResult(
+        int threads,
+        long totalOps,
+        int followers,
+        double throughputOpsSec,
+        double avgMs,
+        double p50Ms,
+        double p99Ms
+) {
+    public String toCsvRow() {
+        return String.join(",",
+                Integer.toString(threads),
+                Long.toString(totalOps),
+                Integer.toString(followers),
+                Double.toString(throughputOpsSec),
+                String.format("%.4f", avgMs),
+                String.format("%.4f", p50Ms),
+                String.format("%.4f", p99Ms)
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package distr.cli.bench;
+
+import distr.common.ClientConnection;
+import distr.common.ClientRequest;
+import distr.common.ClusterState;
+import distr.common.Constants;
+import distr.common.JsonMessage;
+import distr.common.NodeInfo;
+import distr.common.ReplicationMode;
+import distr.common.WireFormat;
+import distr.node.ExecutionMode;
+import distr.node.FsyncPolicy;
+import distr.node.NodeConfig;
+import distr.node.NodeContext;
+import distr.node.NodeServer;
+import distr.node.StorageEngine;
+import distr.node.Transport;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class WritePathRunner {
+    private static final String LEADER_ID = "n0";
+    private static final String HOST = "127.0.0.1";
+    private static final int UNREACHABLE_PORT = 9;
+    private static final int KEY_SPACE = 10_000;
+
+    public WritePathResult run(int threads, long totalOps, int followers) throws IOException, InterruptedException {
+        Logger.getLogger("distr.node").setLevel(Level.WARNING);
+        NodeConfig config = new NodeConfig(ExecutionMode.CACHED, threads, Transport.BLOCKING, WireFormat.BINARY, null,
+                FsyncPolicy.GROUP, Constants.DEFAULT_SNAPSHOT_INTERVAL_MS, 0L, Constants.DEFAULT_WRITE_BATCH_MAX_OPS, 0L, false, 0L,
+                StorageEngine.HEAP, 0L);
+        NodeContext context = new NodeContext(LEADER_ID, HOST, UNREACHABLE_PORT, config);
+        NodeServer server = new NodeServer(context);
+        List<NodeInfo> nodes = new ArrayList<>();
+        for (int i = 0; i <= followers; i++) {
+            nodes.add(new NodeInfo("n" + i, HOST, UNREACHABLE_PORT));
+        }
+        ClusterState cluster = new ClusterState(0L, nodes, LEADER_ID, ReplicationMode.ASYNC, followers + 1, 1, 0, 0, List.of());
+        ObjectNode update = cluster.toJson();
+        update.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
+        server.handleRequest(new JsonMessage(update)).join();
+
+        long[] latencies = new long[(int) totalOps];
+        AtomicLong next = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    long index;
+                    while ((index = next.getAndIncrement()) < totalOps) {
+                        String key = "key" + (index % KEY_SPACE);
+                        long opStart = System.nanoTime();
+                        server.handleRequest(new ClientRequest(Constants.CLIENT_PUT, ClientConnection.nextRequestId(),
+                                "write-path-bench", key, "v")).join();
+                        latencies[(int) index] = System.nanoTime() - opStart;
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "write-path-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+        double elapsedSec = (System.nanoTime() - start) / 1_000_000_000.0;
+        LatencyStats stats = new LatencyStats(latencies);
+        return new WritePathResult(threads, totalOps, followers, totalOps / elapsedSec, stats.avgMs(), stats.p50Ms(), stats.p99Ms());
+    }
+}
@@ -3,11 +3,14 @@ package distr.cli.commands;
 import distr.CliMain;
 import distr.cli.CliState;
 import distr.cli.CliStateStore;
+import distr.common.ClientConnection;
 import distr.common.ClusterState;
 import distr.common.Constants;
+import distr.common.JsonUtil;
 import distr.common.NetworkClient;
 import distr.common.NodeInfo;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import picocli.CommandLine;
@@ -32,22 +35,60 @@ public abstract class BaseCommand implements Runnable {
     }
 
     protected void broadcastClusterUpdate(CliState state) {
+        broadcastClusterUpdate(state, false);
+    }
+
+    protected void broadcastClusterUpdate(CliState state, boolean forceLeader) {
+        long configEpoch = state.nextConfigEpoch();
+        saveState(state);
         ClusterState cluster = state.toClusterState();
         ObjectNode update = cluster.toJson();
+        List<NodeInfo> nodes = new ArrayList<>(state.getNodes().values());
+        if (forceLeader) {
+            update.put(Constants.FORCE_LEADER, true);
+            update.put(Constants.TERM, nextTerm(state, nodes));
+        }
         update.put(Constants.TYPE, Constants.CLUSTER_UPDATE);
-        update.put(Constants.REQUEST_ID, java.util.UUID.randomUUID().toString());
+        update.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
         update.put(Constants.CLIENT_ID, state.getDefaultClientId());
-        List<NodeInfo> nodes = new ArrayList<>(state.getNodes().values());
+        int delivered = 0;
+        for (NodeInfo node : nodes) {
+            try {
+                ObjectNode response = NetworkClient.sendRequest(node, update, Constants.DEFAULT_TIMEOUT_MS);
+                if (Constants.STATUS_OK.equals(response.path(Constants.STATUS).asText())) {
+                    delivered++;
+                }
+            } catch (IOException e) {
+                continue;
+            }
+        }
+        if (delivered < nodes.size()) {
+            System.err.println("Config epoch " + configEpoch + " delivered to " + delivered + "/" + nodes.size()
+                    + " nodes, the rest will catch up via gossip");
+        }
+    }
+
+    private static long nextTerm(CliState state, List<NodeInfo> nodes) {
+        long term = 0L;
         for (NodeInfo node : nodes) {
+            ObjectNode request = JsonUtil.object();
+            request.put(Constants.TYPE, Constants.CLIENT_STATS);
+            request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
+            request.put(Constants.CLIENT_ID, state.getDefaultClientId());
             try {
-                NetworkClient.sendRequest(node.host(), node.port(), update, Constants.DEFAULT_TIMEOUT_MS);
+                JsonNode elections = NetworkClient.sendRequest(node, request, Constants.DEFAULT_TIMEOUT_MS)
+                        .path(Constants.VALUE).path(Constants.ELECTIONS);
+                for (JsonNode election : elections) {
+                    term = Math.max(term, election.path(Constants.TERM).asLong(0L));
+                }
             } catch (IOException e) {
                 continue;
             }
         }
+        return term + 1;
     }
 
     protected ObjectNode sendRequest(NodeInfo node, ObjectNode request) throws IOException {
-        return NetworkClient.sendRequest(node.host(), node.port(), request, Constants.DEFAULT_TIMEOUT_MS);
+        return NetworkClient.sendRequest(node, request, Constants.DEFAULT_TIMEOUT_MS);
     }
 }
@@ -3,7 +3,10 @@ package distr.cli.commands;
 import distr.cli.CliState;
 import distr.cli.bench.BenchResult;
 import distr.cli.bench.BenchRunner;
+import distr.cli.bench.ReadMode;
+import distr.common.Constants;
 import distr.common.ReplicationMode;
+import distr.common.WireFormat;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -34,38 +37,67 @@ public final class BenchCommand extends BaseCommand {
     @Option(names = {"--out"}, description = "Output CSV path")
     private Path outPath;
 
+    @Option(names = {"--connections"}, description = "Client connections per node, defaults to the pool size")
+    private Integer connections;
+
+    @Option(names = {"--threadSweep"}, split = ",", description = "Run once per client thread count, e.g. 16,256,4096")
+    private int[] threadSweep;
+
+    @Option(names = {"--wire"}, defaultValue = "json", description = "Client wire format: json or binary")
+    private String wire;
+
+    @Option(names = {"--batch"}, defaultValue = "1", description = "Keys per request; above 1 uses CLIENT_MPUT and CLIENT_MGET")
+    private int batch;
+
+    @Option(names = {"--read"}, defaultValue = "leader", description = "leader, any, session or linearizable; any and session spread GETs over the shard replicas")
+    private String read;
+
+    @Option(names = {"--max-staleness-ms"}, description = "Staleness bound for follower reads; staler followers forward to the leader")
+    private Long maxStalenessMs;
+
     @Override
     public void run() {
+        WireFormat wireFormat = WireFormat.fromString(wire);
+        ReadMode readMode = ReadMode.fromString(read);
+        if (wireFormat == null || readMode == null || batch < 1 || batch > Constants.MAX_BATCH_KEYS) {
+            System.err.println("BAD_REQUEST");
+            return;
+        }
         CliState state = loadState();
-        if (state.getNodes().isEmpty() || state.getLeaderNodeId() == null) {
+        if (state.getNodes().isEmpty() || (state.getLeaderNodeId() == null && state.getShardCount() == 0)) {
             System.err.println("UNKNOWN_NODE");
             return;
         }
         Path out = outPath != null ? outPath : Path.of("benchmarks", "results.csv");
         List<BenchResult> results = new ArrayList<>();
         if (runDefault) {
-            results.addAll(runDefaultBenchmarks(state));
+            results.addAll(runDefaultBenchmarks(state, wireFormat, readMode));
         } else {
-            results.addAll(runSingle(state));
+            results.addAll(runSingle(state, wireFormat, readMode));
         }
         writeResults(out, results, outPath == null || !Files.exists(out));
         System.out.println("OK");
     }
 
-    private List<BenchResult> runSingle(CliState state) {
+    private List<BenchResult> runSingle(CliState state, WireFormat wireFormat, ReadMode readMode) {
         String mode = state.getReplicationMode().toWire();
         int rf = state.getRf();
         int k = state.getSemiSyncAcks();
-        BenchRunner runner = new BenchRunner(state);
+        int[] threadCounts = threadSweep != null ? threadSweep : new int[]{threads};
         List<BenchResult> results = new ArrayList<>();
         int count = Math.max(1, repeats);
-        for (int i = 0; i < count; i++) {
-            results.add(runner.run(mode, rf, k, threads, putRatio, totalOps));
+        for (int threadCount : threadCounts) {
+            int pooled = connections != null ? connections : threadSweep != null ? threadCount : Constants.POOL_CONNECTIONS_PER_NODE;
+            try (BenchRunner runner = new BenchRunner(state, pooled, wireFormat, readMode, maxStalenessMs)) {
+                for (int i = 0; i < count; i++) {
+                    results.add(runner.run(mode, rf, k, threadCount, putRatio, totalOps, batch));
+                }
+            }
         }
         return results;
     }
 
-    private List<BenchResult> runDefaultBenchmarks(CliState state) {
+    private List<BenchResult> runDefaultBenchmarks(CliState state, WireFormat wireFormat, ReadMode readMode) {
         List<BenchResult> results = new ArrayList<>();
         int[] rfs = new int[]{1, 2, 3};
         double[] ratios = new double[]{0.8, 0.2};
@@ -75,8 +107,10 @@ public final class BenchCommand extends BaseCommand {
             for (int rf : rfs) {
                 for (double ratio : ratios) {
                     applyConfig(state, mode, rf, 1);
-                    for (int i = 0; i < count; i++) {
-                        results.add(new BenchRunner(state).run(mode, rf, state.getSemiSyncAcks(), threads, ratio, totalOps));
+                    try (BenchRunner runner = new BenchRunner(state, Constants.POOL_CONNECTIONS_PER_NODE, wireFormat, readMode, maxStalenessMs)) {
+                        for (int i = 0; i < count; i++) {
+                            results.add(runner.run(mode, rf, state.getSemiSyncAcks(), threads, ratio, totalOps, batch));
+                        }
                     }
                 }
             }
@@ -86,8 +120,10 @@ public final class BenchCommand extends BaseCommand {
             for (double ratio : ratios) {
                 int k = mode.equals("semi-sync") ? 1 : state.getSemiSyncAcks();
                 applyConfig(state, mode, 3, k);
-                for (int i = 0; i < count; i++) {
-                    results.add(new BenchRunner(state).run(mode, 3, state.getSemiSyncAcks(), threads, ratio, totalOps));
+                try (BenchRunner runner = new BenchRunner(state, Constants.POOL_CONNECTIONS_PER_NODE, wireFormat, readMode, maxStalenessMs)) {
+                    for (int i = 0; i < count; i++) {
+                        results.add(runner.run(mode, 3, state.getSemiSyncAcks(), threads, ratio, totalOps, batch));
+                    }
                 }
             }
         }
@@ -117,7 +153,7 @@ public final class BenchCommand extends BaseCommand {
         }
         List<String> lines = new ArrayList<>();
         if (writeHeader) {
-            lines.add("replicationMode,rf,k,threads,putRatio,totalOps,throughputOpsSec,avgMs,p50Ms,p75Ms,p95Ms,p99Ms");
+            lines.add("replicationMode,rf,k,threads,putRatio,totalOps,throughputOpsSec,avgMs,p50Ms,p75Ms,p95Ms,p99Ms,serverPeakThreads,wireFormat,durability,batchSize,shards,readMode");
         }
         for (BenchResult result : results) {
             lines.add(result.toCsvRow());
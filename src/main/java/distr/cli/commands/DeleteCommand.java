@@ -1,6 +1,7 @@
 package distr.cli.commands;
 
 import distr.cli.CliState;
+import distr.common.ClientConnection;
 import distr.common.Constants;
 import distr.common.JsonUtil;
 import distr.common.NodeInfo;
@@ -12,7 +13,6 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.IOException;
-import java.util.UUID;
 
 @Command(name = "delete")
 public final class DeleteCommand extends BaseCommand {
@@ -28,7 +28,7 @@ public final class DeleteCommand extends BaseCommand {
     @Override
     public void run() {
         CliState state = loadState();
-        String target = targetNodeId != null ? targetNodeId : state.getLeaderNodeId();
+        String target = targetNodeId != null ? targetNodeId : state.shardFor(key).leaderNodeId();
         if (target == null) {
             System.err.println("UNKNOWN_NODE");
             return;
@@ -40,7 +40,7 @@ public final class DeleteCommand extends BaseCommand {
         }
         ObjectNode request = JsonUtil.object();
         request.put(Constants.TYPE, Constants.CLIENT_DELETE);
-        request.put(Constants.REQUEST_ID, UUID.randomUUID().toString());
+        request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
         request.put(Constants.CLIENT_ID, clientId != null ? clientId : state.getDefaultClientId());
         request.put(Constants.KEY, key);
         try {
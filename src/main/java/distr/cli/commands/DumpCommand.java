@@ -1,6 +1,7 @@
 package distr.cli.commands;
 
 import distr.cli.CliState;
+import distr.common.ClientConnection;
 import distr.common.Constants;
 import distr.common.JsonUtil;
 import distr.common.NodeInfo;
@@ -11,7 +12,6 @@ import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 import java.io.IOException;
-import java.util.UUID;
 
 @Command(name = "dump")
 public final class DumpCommand extends BaseCommand {
@@ -33,7 +33,7 @@ public final class DumpCommand extends BaseCommand {
         }
         ObjectNode request = JsonUtil.object();
         request.put(Constants.TYPE, Constants.CLIENT_DUMP);
-        request.put(Constants.REQUEST_ID, UUID.randomUUID().toString());
+        request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
         request.put(Constants.CLIENT_ID, state.getDefaultClientId());
         try {
             ObjectNode response = sendRequest(node, request);
@@ -0,0 +1,71 @@
+package distr.cli.commands;
+
+import distr.cli.CliState;
+import distr.cli.bench.FailoverResult;
+import distr.cli.bench.FailoverRunner;
+import distr.common.WireFormat;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(name = "failoverBench")
+public final class FailoverBenchCommand extends BaseCommand {
+    @Option(names = {"--threads"}, defaultValue = "4")
+    private int threads;
+
+    @Option(names = {"--durationMs"}, defaultValue = "10000", description = "Kill the leader while this runs")
+    private long durationMs;
+
+    @Option(names = {"--timeoutMs"}, defaultValue = "500", description = "Per-request timeout")
+    private int timeoutMs;
+
+    @Option(names = {"--wire"}, defaultValue = "binary", description = "Client wire format: json or binary")
+    private String wire;
+
+    @Option(names = {"--out"}, description = "Output CSV path")
+    private Path outPath;
+
+    @Override
+    public void run() {
+        WireFormat wireFormat = WireFormat.fromString(wire);
+        if (wireFormat == null || threads < 1 || durationMs < 1 || timeoutMs < 1) {
+            System.err.println("BAD_REQUEST");
+            return;
+        }
+        CliState state = loadState();
+        if (state.getNodes().isEmpty()) {
+            System.err.println("UNKNOWN_NODE");
+            return;
+        }
+        FailoverResult result;
+        try (FailoverRunner runner = new FailoverRunner(state, wireFormat)) {
+            result = runner.run(threads, durationMs, timeoutMs);
+        }
+        Path out = outPath != null ? outPath : Path.of("benchmarks", "failover.csv");
+        writeResult(out, result);
+        System.out.println(result.toCsvRow());
+    }
+
+    private void writeResult(Path out, FailoverResult result) {
+        try {
+            if (out.getParent() != null) {
+                Files.createDirectories(out.getParent());
+            }
+            List<String> lines = new ArrayList<>();
+            if (!Files.exists(out)) {
+                lines.add("threads,durationMs,writesOk,writesFailed,maxGapMs,gapStartMs,leaderBefore,leaderAfter");
+            }
+            lines.add(result.toCsvRow());
+            Files.write(out, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            return;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package distr.cli.commands;
 
 import distr.cli.CliState;
+import distr.common.ClientConnection;
 import distr.common.Constants;
 import distr.common.JsonUtil;
 import distr.common.NodeInfo;
+import distr.common.ShardInfo;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -14,7 +16,7 @@ import picocli.CommandLine.Parameters;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Command(name = "get")
 public final class GetCommand extends BaseCommand {
@@ -27,9 +29,17 @@ public final class GetCommand extends BaseCommand {
     @Option(names = {"--client"})
     private String clientId;
 
-    @Option(names = {"--read"}, description = "any or leader")
+    @Option(names = {"--read"}, description = "any, leader or linearizable")
     private String readMode = "any";
 
+    @Option(names = {"--token"}, description = "readToken returned by put, delete, mput or mdelete")
+    private String readToken;
+
+    @Option(names = {"--max-staleness-ms"})
+    private Long maxStalenessMs;
+
+    private final int spread = ThreadLocalRandom.current().nextInt(1 << 16);
+
     @Override
     public void run() {
         CliState state = loadState();
@@ -40,9 +50,17 @@ public final class GetCommand extends BaseCommand {
         }
         ObjectNode request = JsonUtil.object();
         request.put(Constants.TYPE, Constants.CLIENT_GET);
-        request.put(Constants.REQUEST_ID, UUID.randomUUID().toString());
+        request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
         request.put(Constants.CLIENT_ID, clientId != null ? clientId : state.getDefaultClientId());
         request.put(Constants.KEY, key);
+        if (readToken != null) {
+            request.put(Constants.READ_TOKEN, readToken);
+        }
+        if ("linearizable".equalsIgnoreCase(readMode)) {
+            request.put(Constants.MAX_STALENESS_MS, 0L);
+        } else if (maxStalenessMs != null) {
+            request.put(Constants.MAX_STALENESS_MS, maxStalenessMs);
+        }
         try {
             ObjectNode response = sendRequest(node, request);
             System.out.println(response.toString());
@@ -55,18 +73,22 @@ public final class GetCommand extends BaseCommand {
         if (targetNodeId != null) {
             return state.getNode(targetNodeId).orElse(null);
         }
-        if ("leader".equalsIgnoreCase(readMode)) {
-            String leaderId = state.getLeaderNodeId();
+        ShardInfo shard = state.shardFor(key);
+        if ("leader".equalsIgnoreCase(readMode) || "linearizable".equalsIgnoreCase(readMode)) {
+            String leaderId = shard.leaderNodeId();
             if (leaderId == null) {
                 return null;
             }
             return state.getNode(leaderId).orElse(null);
         }
+        if (state.getShardCount() > 0) {
+            return shard.replicas().isEmpty() ? null : state.getNode(shard.replicas().get(spread % shard.replicas().size())).orElse(null);
+        }
         List<NodeInfo> nodes = new ArrayList<>(state.getNodes().values());
         if (nodes.isEmpty()) {
             return null;
         }
-        return nodes.get(0);
+        return nodes.get(spread % nodes.size());
     }
 }
 
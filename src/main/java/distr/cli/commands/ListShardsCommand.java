@@ -0,0 +1,17 @@
+package distr.cli.commands;
+
+import distr.cli.CliState;
+import distr.common.ShardInfo;
+
+import picocli.CommandLine.Command;
+
+@Command(name = "listShards")
+public final class ListShardsCommand extends BaseCommand {
+    @Override
+    public void run() {
+        CliState state = loadState();
+        for (ShardInfo shard : state.toClusterState().getShards()) {
+            System.out.println(shard.shardId() + " " + shard.leaderNodeId() + "* " + String.join(",", shard.replicas()));
+        }
+    }
+}
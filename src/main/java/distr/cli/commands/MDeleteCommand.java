@@ -0,0 +1,69 @@
+package distr.cli.commands;
+
+import distr.cli.CliState;
+import distr.common.ClientConnection;
+import distr.common.ClusterState;
+import distr.common.Constants;
+import distr.common.JsonUtil;
+import distr.common.NodeInfo;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Command(name = "mdelete")
+public final class MDeleteCommand extends BaseCommand {
+    @Parameters(arity = "1..*")
+    private List<String> keys;
+
+    @Option(names = {"--target"})
+    private String targetNodeId;
+
+    @Option(names = {"--client"})
+    private String clientId;
+
+    @Override
+    public void run() {
+        CliState state = loadState();
+        ClusterState cluster = state.toClusterState();
+        Map<String, List<String>> keysByTarget = new LinkedHashMap<>();
+        for (String key : keys) {
+            String target = targetNodeId != null ? targetNodeId : cluster.shardFor(key).leaderNodeId();
+            if (target == null) {
+                System.err.println("UNKNOWN_NODE");
+                return;
+            }
+            keysByTarget.computeIfAbsent(target, id -> new ArrayList<>()).add(key);
+        }
+        for (Map.Entry<String, List<String>> group : keysByTarget.entrySet()) {
+            NodeInfo node = state.getNode(group.getKey()).orElse(null);
+            if (node == null) {
+                System.err.println("UNKNOWN_NODE");
+                return;
+            }
+            ObjectNode request = JsonUtil.object();
+            request.put(Constants.TYPE, Constants.CLIENT_MDELETE);
+            request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
+            request.put(Constants.CLIENT_ID, clientId != null ? clientId : state.getDefaultClientId());
+            ArrayNode array = request.putArray(Constants.KEYS);
+            for (String key : group.getValue()) {
+                array.add(key);
+            }
+            try {
+                ObjectNode response = sendRequest(node, request);
+                System.out.println(response.toString());
+            } catch (IOException e) {
+                System.err.println("TIMEOUT");
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package distr.cli.commands;
+
+import distr.cli.CliState;
+import distr.common.ClientConnection;
+import distr.common.ClusterState;
+import distr.common.Constants;
+import distr.common.JsonUtil;
+import distr.common.NodeInfo;
+import distr.common.ShardInfo;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Command(name = "mget")
+public final class MGetCommand extends BaseCommand {
+    @Parameters(arity = "1..*")
+    private List<String> keys;
+
+    @Option(names = {"--target"})
+    private String targetNodeId;
+
+    @Option(names = {"--client"})
+    private String clientId;
+
+    @Option(names = {"--read"}, description = "any, leader or linearizable")
+    private String readMode = "any";
+
+    @Option(names = {"--token"}, description = "readToken returned by put, delete, mput or mdelete")
+    private String readToken;
+
+    @Option(names = {"--max-staleness-ms"})
+    private Long maxStalenessMs;
+
+    private final int spread = ThreadLocalRandom.current().nextInt(1 << 16);
+
+    @Override
+    public void run() {
+        CliState state = loadState();
+        ClusterState cluster = state.toClusterState();
+        Map<NodeInfo, List<String>> keysByTarget = new LinkedHashMap<>();
+        for (String key : keys) {
+            NodeInfo node = resolveTarget(state, cluster, key);
+            if (node == null) {
+                System.err.println("UNKNOWN_NODE");
+                return;
+            }
+            keysByTarget.computeIfAbsent(node, target -> new ArrayList<>()).add(key);
+        }
+        for (Map.Entry<NodeInfo, List<String>> group : keysByTarget.entrySet()) {
+            ObjectNode request = JsonUtil.object();
+            request.put(Constants.TYPE, Constants.CLIENT_MGET);
+            request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
+            request.put(Constants.CLIENT_ID, clientId != null ? clientId : state.getDefaultClientId());
+            if (readToken != null) {
+                request.put(Constants.READ_TOKEN, readToken);
+            }
+            if ("linearizable".equalsIgnoreCase(readMode)) {
+                request.put(Constants.MAX_STALENESS_MS, 0L);
+            } else if (maxStalenessMs != null) {
+                request.put(Constants.MAX_STALENESS_MS, maxStalenessMs);
+            }
+            ArrayNode array = request.putArray(Constants.KEYS);
+            for (String key : group.getValue()) {
+                array.add(key);
+            }
+            try {
+                ObjectNode response = sendRequest(group.getKey(), request);
+                System.out.println(response.toString());
+            } catch (IOException e) {
+                System.err.println("TIMEOUT");
+            }
+        }
+    }
+
+    private NodeInfo resolveTarget(CliState state, ClusterState cluster, String key) {
+        if (targetNodeId != null) {
+            return state.getNode(targetNodeId).orElse(null);
+        }
+        ShardInfo shard = cluster.shardFor(key);
+        if ("leader".equalsIgnoreCase(readMode) || "linearizable".equalsIgnoreCase(readMode)) {
+            String leaderId = shard.leaderNodeId();
+            if (leaderId == null) {
+                return null;
+            }
+            return state.getNode(leaderId).orElse(null);
+        }
+        if (!cluster.getShards().isEmpty()) {
+            return shard.replicas().isEmpty() ? null : state.getNode(shard.replicas().get(spread % shard.replicas().size())).orElse(null);
+        }
+        List<NodeInfo> nodes = new ArrayList<>(state.getNodes().values());
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        return nodes.get(spread % nodes.size());
+    }
+}
+
@@ -0,0 +1,70 @@
+package distr.cli.commands;
+
+import distr.cli.CliState;
+import distr.common.ClientConnection;
+import distr.common.ClusterState;
+import distr.common.Constants;
+import distr.common.JsonUtil;
+import distr.common.NodeInfo;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Command(name = "mput")
+public final class MPutCommand extends BaseCommand {
+    @Parameters(arity = "1..*", description = "key=value pairs")
+    private List<String> pairs;
+
+    @Option(names = {"--target"})
+    private String targetNodeId;
+
+    @Option(names = {"--client"})
+    private String clientId;
+
+    @Override
+    public void run() {
+        CliState state = loadState();
+        ClusterState cluster = state.toClusterState();
+        Map<String, ObjectNode> entriesByTarget = new LinkedHashMap<>();
+        for (String pair : pairs) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                System.err.println("BAD_REQUEST");
+                return;
+            }
+            String key = pair.substring(0, separator);
+            String target = targetNodeId != null ? targetNodeId : cluster.shardFor(key).leaderNodeId();
+            if (target == null) {
+                System.err.println("UNKNOWN_NODE");
+                return;
+            }
+            entriesByTarget.computeIfAbsent(target, id -> JsonUtil.object()).put(key, pair.substring(separator + 1));
+        }
+        for (Map.Entry<String, ObjectNode> group : entriesByTarget.entrySet()) {
+            NodeInfo node = state.getNode(group.getKey()).orElse(null);
+            if (node == null) {
+                System.err.println("UNKNOWN_NODE");
+                return;
+            }
+            ObjectNode request = JsonUtil.object();
+            request.put(Constants.TYPE, Constants.CLIENT_MPUT);
+            request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
+            request.put(Constants.CLIENT_ID, clientId != null ? clientId : state.getDefaultClientId());
+            request.set(Constants.ENTRIES, group.getValue());
+            try {
+                ObjectNode response = sendRequest(node, request);
+                System.out.println(response.toString());
+            } catch (IOException e) {
+                System.err.println("TIMEOUT");
+            }
+        }
+    }
+}
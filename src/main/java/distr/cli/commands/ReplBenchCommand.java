@@ -0,0 +1,73 @@
+package distr.cli.commands;
+
+import distr.cli.bench.ReplPathResult;
+import distr.cli.bench.ReplPathRunner;
+import distr.common.MalformedMessageException;
+import distr.common.WireFormat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(name = "replBench")
+public final class ReplBenchCommand extends BaseCommand {
+    @Option(names = {"--totalOps"}, defaultValue = "200000")
+    private int totalOps;
+
+    @Option(names = {"--batch"}, defaultValue = "512", description = "Ops per replication batch")
+    private int batch;
+
+    @Option(names = {"--valueSize"}, defaultValue = "16", description = "Value length in characters")
+    private int valueSize;
+
+    @Option(names = {"--rounds"}, defaultValue = "5", description = "Rounds in one process; the fastest round is reported")
+    private int rounds;
+
+    @Option(names = {"--wire"}, defaultValue = "binary", description = "Replication wire format: json or binary")
+    private String wire;
+
+    @Option(names = {"--out"}, description = "Output CSV path")
+    private Path outPath;
+
+    @Override
+    public void run() {
+        WireFormat wireFormat = WireFormat.fromString(wire);
+        if (wireFormat == null || totalOps < 1 || batch < 1 || valueSize < 0 || rounds < 1) {
+            System.err.println("BAD_REQUEST");
+            return;
+        }
+        ReplPathResult result;
+        try {
+            result = new ReplPathRunner().run(wireFormat, totalOps, batch, valueSize, rounds);
+        } catch (JsonProcessingException | MalformedMessageException e) {
+            System.err.println("ERROR " + e.getMessage());
+            return;
+        }
+        Path out = outPath != null ? outPath : Path.of("benchmarks", "repl_path.csv");
+        writeResult(out, result);
+        System.out.println(result.toCsvRow());
+    }
+
+    private void writeResult(Path out, ReplPathResult result) {
+        try {
+            if (out.getParent() != null) {
+                Files.createDirectories(out.getParent());
+            }
+            List<String> lines = new ArrayList<>();
+            if (!Files.exists(out)) {
+                lines.add("wire,totalOps,batch,valueSize,encodeNsPerOp,encodeBytesPerOp,decodeNsPerOp,decodeBytesPerOp,wireBytesPerOp,requestIdNsPerOp,requestIdBytesPerOp");
+            }
+            lines.add(result.toCsvRow());
+            Files.write(out, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            return;
+        }
+    }
+}
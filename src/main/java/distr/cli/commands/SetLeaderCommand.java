@@ -19,7 +19,7 @@ public final class SetLeaderCommand extends BaseCommand {
         }
         state.setLeaderNodeId(nodeId);
         saveState(state);
-        broadcastClusterUpdate(state);
+        broadcastClusterUpdate(state, true);
         System.out.println("OK");
     }
 }
@@ -0,0 +1,25 @@
+package distr.cli.commands;
+
+import distr.cli.CliState;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Parameters;
+
+@Command(name = "setShards")
+public final class SetShardsCommand extends BaseCommand {
+    @Parameters(index = "0", description = "Number of hash slots, 0 disables sharding")
+    private int shards;
+
+    @Override
+    public void run() {
+        CliState state = loadState();
+        if (shards < 0 || (shards > 0 && state.getNodes().isEmpty())) {
+            System.err.println("BAD_REQUEST");
+            return;
+        }
+        state.setShardCount(shards);
+        saveState(state);
+        broadcastClusterUpdate(state);
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,45 @@
+package distr.cli.commands;
+
+import distr.cli.CliState;
+import distr.common.ClientConnection;
+import distr.common.Constants;
+import distr.common.JsonUtil;
+import distr.common.NodeInfo;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+
+@Command(name = "stats")
+public final class StatsCommand extends BaseCommand {
+    @Option(names = {"--target"})
+    private String targetNodeId;
+
+    @Override
+    public void run() {
+        CliState state = loadState();
+        String target = targetNodeId != null ? targetNodeId : state.getLeaderNodeId();
+        if (target == null) {
+            System.err.println("UNKNOWN_NODE");
+            return;
+        }
+        NodeInfo node = state.getNode(target).orElse(null);
+        if (node == null) {
+            System.err.println("UNKNOWN_NODE");
+            return;
+        }
+        ObjectNode request = JsonUtil.object();
+        request.put(Constants.TYPE, Constants.CLIENT_STATS);
+        request.put(Constants.REQUEST_ID, ClientConnection.nextRequestId());
+        request.put(Constants.CLIENT_ID, state.getDefaultClientId());
+        try {
+            ObjectNode response = sendRequest(node, request);
+            System.out.println(response.toString());
+        } catch (IOException e) {
+            System.err.println("TIMEOUT");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package distr.cli.commands;
+
+import distr.cli.bench.StoreBenchResult;
+import distr.cli.bench.StoreBenchRunner;
+import distr.node.StorageEngine;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(name = "storeBench")
+public final class StoreBenchCommand extends BaseCommand {
+    @Option(names = {"--engine"}, defaultValue = "heap", description = "Storage engine: heap, offheap or lsm")
+    private String engine;
+
+    @Option(names = {"--keys"}, defaultValue = "2000000")
+    private long keys;
+
+    @Option(names = {"--valueBytes"}, defaultValue = "32")
+    private int valueBytes;
+
+    @Option(names = {"--gets"}, defaultValue = "1000000")
+    private long gets;
+
+    @Option(names = {"--out"}, description = "Output CSV path")
+    private Path outPath;
+
+    @Override
+    public void run() {
+        StorageEngine storageEngine = StorageEngine.fromString(engine);
+        if (storageEngine == null || keys < 1 || valueBytes < 0 || gets < 0) {
+            System.err.println("BAD_REQUEST");
+            return;
+        }
+        StoreBenchResult result;
+        try {
+            result = new StoreBenchRunner().run(storageEngine, keys, valueBytes, gets);
+        } catch (IOException e) {
+            System.err.println("ERROR " + e.getMessage());
+            return;
+        }
+        Path out = outPath != null ? outPath : Path.of("benchmarks", "store.csv");
+        writeResult(out, result);
+        System.out.println(result.toCsvRow());
+    }
+
+    private void writeResult(Path out, StoreBenchResult result) {
+        try {
+            if (out.getParent() != null) {
+                Files.createDirectories(out.getParent());
+            }
+            List<String> lines = new ArrayList<>();
+            if (!Files.exists(out)) {
+                lines.add("engine,keys,valueBytes,loadOpsSec,getNs,heapMb,offHeapMb,diskMb,gcCount,gcTotalMs,gcMaxPauseMs,fullGcMs");
+            }
+            lines.add(result.toCsvRow());
+            Files.write(out, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            return;
+        }
+    }
+}
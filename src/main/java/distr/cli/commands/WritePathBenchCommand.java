@@ -0,0 +1,66 @@
+package distr.cli.commands;
+
+import distr.cli.bench.WritePathResult;
+import distr.cli.bench.WritePathRunner;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(name = "writePathBench")
+public final class WritePathBenchCommand extends BaseCommand {
+    @Option(names = {"--threads"}, defaultValue = "64")
+    private int threads;
+
+    @Option(names = {"--totalOps"}, defaultValue = "1000000")
+    private long totalOps;
+
+    @Option(names = {"--followers"}, defaultValue = "2", description = "Unreachable async followers in the in-process cluster")
+    private int followers;
+
+    @Option(names = {"--out"}, description = "Output CSV path")
+    private Path outPath;
+
+    @Override
+    public void run() {
+        if (threads < 1 || totalOps < 1 || totalOps > Integer.MAX_VALUE || followers < 0) {
+            System.err.println("BAD_REQUEST");
+            return;
+        }
+        WritePathResult result;
+        try {
+            result = new WritePathRunner().run(threads, totalOps, followers);
+        } catch (IOException e) {
+            System.err.println("ERROR " + e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Path out = outPath != null ? outPath : Path.of("benchmarks", "write_path.csv");
+        writeResult(out, result);
+        System.out.println(result.toCsvRow());
+    }
+
+    private void writeResult(Path out, WritePathResult result) {
+        try {
+            if (out.getParent() != null) {
+                Files.createDirectories(out.getParent());
+            }
+            List<String> lines = new ArrayList<>();
+            if (!Files.exists(out)) {
+                lines.add("threads,totalOps,followers,throughputOpsSec,avgMs,p50Ms,p99Ms");
+            }
+            lines.add(result.toCsvRow());
+            Files.write(out, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            return;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package distr.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BinaryCodec {
+    private static final byte KIND_JSON = 0;
+    private static final byte KIND_CLIENT_PUT = 1;
+    private static final byte KIND_CLIENT_GET = 2;
+    private static final byte KIND_CLIENT_DELETE = 3;
+    private static final byte KIND_REPL_BATCH = 4;
+    private static final byte KIND_REPL_ACK = 5;
+    private static final byte KIND_RESPONSE = 6;
+    private static final byte KIND_REPL_SNAPSHOT = 7;
+    private static final byte OP_PUT = 0;
+    private static final byte OP_DELETE = 1;
+    private static final byte FOUND_UNSET = 0;
+    private static final byte FOUND_FALSE = 1;
+    private static final byte FOUND_TRUE = 2;
+
+    private BinaryCodec() {
+    }
+
+    public static byte[] encode(Message message) throws JsonProcessingException {
+        Output out = new Output(64);
+        switch (message) {
+            case ClientRequest request -> {
+                byte kind = switch (request.type()) {
+                    case Constants.CLIENT_PUT -> KIND_CLIENT_PUT;
+                    case Constants.CLIENT_GET -> KIND_CLIENT_GET;
+                    case Constants.CLIENT_DELETE -> KIND_CLIENT_DELETE;
+                    default -> throw new IllegalArgumentException("Unknown client request " + request.type());
+                };
+                out.write(kind);
+                out.writeString(request.requestId());
+                out.writeString(request.clientId());
+                out.writeString(request.key());
+                if (kind == KIND_CLIENT_PUT) {
+                    out.writeString(request.value());
+                } else if (kind == KIND_CLIENT_GET) {
+                    out.writeString(request.readToken());
+                    out.writeVarLong(request.maxStalenessMs() == null ? 0L : request.maxStalenessMs() + 1);
+                }
+            }
+            case ClientResponse response -> {
+                out.write(KIND_RESPONSE);
+                out.writeString(response.requestId());
+                out.writeString(response.status());
+                out.writeString(response.errorCode());
+                out.writeString(response.errorMessage());
+                out.writeString(response.leaderNodeId());
+                out.write(response.found() == null ? FOUND_UNSET : response.found() ? FOUND_TRUE : FOUND_FALSE);
+                out.writeString(response.value());
+                out.writeVarLong(response.retryAfterMs() == null ? 0L : response.retryAfterMs() + 1);
+                out.writeString(response.readToken());
+            }
+            case ReplBatch batch -> {
+                writeBatchHeader(out, batch.originNodeId(), batch.epoch(), batch.baseSeq(), batch.safeSeq(), batch.ops().size(), batch.snapshot());
+                for (ReplOp op : batch.ops()) {
+                    writeOp(out, op);
+                }
+            }
+            case ReplAck ack -> {
+                out.write(KIND_REPL_ACK);
+                out.writeString(ack.fromNodeId());
+                out.writeVarLong(ack.epoch());
+                out.writeVarLong(ack.followerEpoch());
+                out.writeVarLong(ack.ackedSeq());
+            }
+            case JsonMessage json -> {
+                out.write(KIND_JSON);
+                out.writeBytes(JsonUtil.toJson(json.node()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeBatch(String originNodeId, long epoch, long baseSeq, long safeSeq, List<EncodedOp> ops, boolean snapshot) {
+        Output out = new Output(64 + ops.size() * 64);
+        writeBatchHeader(out, originNodeId, epoch, baseSeq, safeSeq, ops.size(), snapshot);
+        for (EncodedOp op : ops) {
+            out.writeBytes(op.binary());
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeOp(ReplOp op) {
+        Output out = new Output(64);
+        writeOp(out, op);
+        return out.toByteArray();
+    }
+
+    public static Message decode(byte[] payload) throws MalformedMessageException {
+        if (payload.length == 0) {
+            throw new MalformedMessageException("Empty frame");
+        }
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            byte kind = in.get();
+            return switch (kind) {
+                case KIND_JSON -> {
+                    Message message = JsonCodec.decode(payload, 1, payload.length - 1);
+                    if (message == null) {
+                        throw new MalformedMessageException("Empty JSON frame");
+                    }
+                    yield message;
+                }
+                case KIND_CLIENT_PUT -> new ClientRequest(Constants.CLIENT_PUT, readString(in), readString(in), readString(in), readString(in));
+                case KIND_CLIENT_GET -> decodeGet(in);
+                case KIND_CLIENT_DELETE -> new ClientRequest(Constants.CLIENT_DELETE, readString(in), readString(in), readString(in), null);
+                case KIND_REPL_BATCH -> decodeBatch(in, false);
+                case KIND_REPL_SNAPSHOT -> decodeBatch(in, true);
+                case KIND_REPL_ACK -> new ReplAck(readString(in), readVarLong(in), readVarLong(in), readVarLong(in));
+                case KIND_RESPONSE -> decodeResponse(in);
+                default -> throw new MalformedMessageException("Unknown frame kind " + kind);
+            };
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new MalformedMessageException("Malformed frame", e);
+        }
+    }
+
+    private static void writeBatchHeader(Output out, String originNodeId, long epoch, long baseSeq, long safeSeq, int count,
+                                         boolean snapshot) {
+        out.write(snapshot ? KIND_REPL_SNAPSHOT : KIND_REPL_BATCH);
+        out.writeString(originNodeId);
+        out.writeVarLong(epoch);
+        out.writeVarLong(baseSeq);
+        out.writeVarLong(safeSeq);
+        out.writeVarLong(count);
+    }
+
+    private static void writeOp(Output out, ReplOp op) {
+        out.write(op.isPut() ? OP_PUT : OP_DELETE);
+        out.writeString(op.key());
+        out.writeVarLong(op.seq());
+        if (op.isPut()) {
+            out.writeString(op.value());
+        }
+    }
+
+    private static ReplBatch decodeBatch(ByteBuffer in, boolean snapshot) {
+        String originNodeId = readString(in);
+        long epoch = readVarLong(in);
+        long baseSeq = readVarLong(in);
+        long safeSeq = readVarLong(in);
+        long count = readVarLong(in);
+        if (count > in.remaining()) {
+            throw new IllegalArgumentException("Bad op count " + count);
+        }
+        List<ReplOp> ops = new ArrayList<>((int) count);
+        for (long i = 0; i < count; i++) {
+            boolean isPut = in.get() == OP_PUT;
+            String key = readString(in);
+            long seq = readVarLong(in);
+            String value = isPut ? readString(in) : null;
+            ops.add(new ReplOp(isPut ? Constants.PUT : Constants.DELETE, key, seq, value));
+        }
+        return new ReplBatch(originNodeId, epoch, baseSeq, safeSeq, ops, snapshot);
+    }
+
+    private static ClientRequest decodeGet(ByteBuffer in) {
+        String requestId = readString(in);
+        String clientId = readString(in);
+        String key = readString(in);
+        String readToken = readString(in);
+        long maxStalenessMs = readVarLong(in) - 1;
+        return new ClientRequest(Constants.CLIENT_GET, requestId, clientId, key, null, readToken,
+                maxStalenessMs < 0 ? null : maxStalenessMs);
+    }
+
+    private static ClientResponse decodeResponse(ByteBuffer in) {
+        String requestId = readString(in);
+        String status = readString(in);
+        String errorCode = readString(in);
+        String errorMessage = readString(in);
+        String leaderNodeId = readString(in);
+        byte found = in.get();
+        String value = readString(in);
+        long retryAfterMs = readVarLong(in) - 1;
+        String readToken = readString(in);
+        return new ClientResponse(requestId, status, errorCode, errorMessage, leaderNodeId,
+                found == FOUND_UNSET ? null : found == FOUND_TRUE, value, retryAfterMs < 0 ? null : retryAfterMs, readToken);
+    }
+
+    private static String readString(ByteBuffer in) {
+        long length = readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        String value = new String(in.array(), in.position(), (int) length, StandardCharsets.UTF_8);
+        in.position(in.position() + (int) length);
+        return value;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        private Output(int size) {
+            super(size);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0L);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+    }
+}
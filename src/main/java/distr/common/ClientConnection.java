@@ -0,0 +1,123 @@
+package distr.common;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class ClientConnection {
+    private static final AtomicLong REQUEST_IDS = new AtomicLong();
+    private final WireStream stream;
+    private final ConcurrentHashMap<String, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private ClientConnection(WireStream stream) {
+        this.stream = stream;
+    }
+
+    public static ClientConnection open(String host, int port, WireFormat format, int timeoutMs) throws IOException {
+        ClientConnection connection = new ClientConnection(WireStream.connect(host, port, format, timeoutMs));
+        Thread thread = new Thread(connection::readLoop, "conn-" + host + ":" + port);
+        thread.setDaemon(true);
+        thread.start();
+        return connection;
+    }
+
+    public WireFormat format() {
+        return stream.format();
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    public static String nextRequestId() {
+        return "r" + REQUEST_IDS.incrementAndGet();
+    }
+
+    public ObjectNode request(ObjectNode request, int timeoutMs) throws IOException {
+        if (!request.hasNonNull(Constants.REQUEST_ID)) {
+            request.put(Constants.REQUEST_ID, nextRequestId());
+        }
+        return JsonCodec.toTree(request(JsonCodec.fromTree(request), timeoutMs));
+    }
+
+    public Message request(Message request, int timeoutMs) throws IOException {
+        String requestId = request.requestId();
+        if (requestId == null) {
+            throw new IllegalArgumentException("Request without requestId");
+        }
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        if (pending.putIfAbsent(requestId, future) != null) {
+            throw new IOException("Duplicate requestId " + requestId);
+        }
+        try {
+            send(request);
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("No response for " + requestId);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            pending.remove(requestId);
+        }
+    }
+
+    public void send(ObjectNode message) throws IOException {
+        send(JsonCodec.fromTree(message));
+    }
+
+    public void send(Message message) throws IOException {
+        try {
+            stream.write(message);
+        } catch (IOException e) {
+            close(e);
+            throw e;
+        }
+    }
+
+    public void close() {
+        close(new IOException("Connection closed"));
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                Message response;
+                try {
+                    response = stream.read();
+                } catch (MalformedMessageException e) {
+                    continue;
+                }
+                if (response == null) {
+                    break;
+                }
+                String requestId = response.requestId();
+                CompletableFuture<Message> future = requestId == null ? null : pending.remove(requestId);
+                if (future != null) {
+                    future.complete(response);
+                }
+            }
+            close(new IOException("Connection closed"));
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    private void close(IOException cause) {
+        closed = true;
+        stream.close();
+        for (CompletableFuture<Message> future : pending.values()) {
+            future.completeExceptionally(cause);
+        }
+    }
+}
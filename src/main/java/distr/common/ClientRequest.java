@@ -0,0 +1,16 @@
+package distr.common;
+
+public record ClientRequest(String type, String requestId, String clientId, String key, String value,
+                            String readToken, Long maxStalenessMs) implements Message {
+    public ClientRequest(String type, String requestId, String clientId, String key, String value) {
+        this(type, requestId, clientId, key, value, null, null);
+    }
+
+    public boolean isBounded() {
+        return readToken != null || maxStalenessMs != null;
+    }
+
+    public ClientRequest unbounded() {
+        return new ClientRequest(type, requestId, clientId, key, value);
+    }
+}
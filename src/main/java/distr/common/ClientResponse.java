@@ -0,0 +1,38 @@
+package distr.common;
+
+public record ClientResponse(String requestId, String status, String errorCode, String errorMessage,
+                             String leaderNodeId, Boolean found, String value, Long retryAfterMs,
+                             String readToken) implements Message {
+    public ClientResponse(String requestId, String status, String errorCode, String errorMessage,
+                          String leaderNodeId, Boolean found, String value, Long retryAfterMs) {
+        this(requestId, status, errorCode, errorMessage, leaderNodeId, found, value, retryAfterMs, null);
+    }
+
+    public static ClientResponse ok(String requestId) {
+        return new ClientResponse(requestId, Constants.STATUS_OK, null, null, null, null, null, null);
+    }
+
+    public static ClientResponse found(String requestId, String value) {
+        return new ClientResponse(requestId, Constants.STATUS_OK, null, null, null, value != null, value, null);
+    }
+
+    public static ClientResponse error(String requestId, String errorCode, String errorMessage) {
+        return new ClientResponse(requestId, Constants.STATUS_ERROR, errorCode, errorMessage, null, null, null, null);
+    }
+
+    public ClientResponse withLeader(String leaderNodeId) {
+        return new ClientResponse(requestId, status, errorCode, errorMessage, leaderNodeId, found, value, retryAfterMs, readToken);
+    }
+
+    public ClientResponse withRetryAfter(long retryAfterMs) {
+        return new ClientResponse(requestId, status, errorCode, errorMessage, leaderNodeId, found, value, retryAfterMs, readToken);
+    }
+
+    public ClientResponse withReadToken(String readToken) {
+        return new ClientResponse(requestId, status, errorCode, errorMessage, leaderNodeId, found, value, retryAfterMs, readToken);
+    }
+
+    public boolean isOk() {
+        return Constants.STATUS_OK.equals(status);
+    }
+}
@@ -3,114 +3,205 @@ package distr.common;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public final class ClusterState {
+    private final long version;
+    private final long configEpoch;
     private final Map<String, NodeInfo> nodes;
-    private String leaderNodeId;
-    private ReplicationMode replicationMode;
-    private int rf;
-    private int semiSyncAcks;
-    private int delayMinMs;
-    private int delayMaxMs;
+    private final List<NodeInfo> nodeList;
+    private final String leaderNodeId;
+    private final ReplicationMode replicationMode;
+    private final int rf;
+    private final int semiSyncAcks;
+    private final int delayMinMs;
+    private final int delayMaxMs;
+    private final List<ShardInfo> shards;
+    private final List<ShardInfo> effectiveShards;
+    private final Map<Integer, List<NodeInfo>> followers;
+    private final Map<Integer, Set<String>> followerIds;
 
     public ClusterState() {
-        this.nodes = new LinkedHashMap<>();
-        this.leaderNodeId = null;
-        this.replicationMode = ReplicationMode.ASYNC;
-        this.rf = 1;
-        this.semiSyncAcks = 1;
-        this.delayMinMs = 0;
-        this.delayMaxMs = 0;
+        this(0L, List.of(), null, ReplicationMode.ASYNC, 1, 1, 0, 0, List.of());
     }
 
-    public synchronized void upsertNode(NodeInfo node) {
-        nodes.put(node.nodeId(), node);
+    public ClusterState(long configEpoch, Collection<NodeInfo> nodes, String leaderNodeId, ReplicationMode replicationMode,
+                        int rf, int semiSyncAcks, int delayMinMs, int delayMaxMs, List<ShardInfo> shards) {
+        this(0L, configEpoch, index(nodes), leaderNodeId, replicationMode, rf, semiSyncAcks, delayMinMs, delayMaxMs,
+                List.copyOf(shards));
     }
 
-    public synchronized void removeNode(String nodeId) {
-        nodes.remove(nodeId);
+    private ClusterState(long version, long configEpoch, Map<String, NodeInfo> nodes, String leaderNodeId,
+                         ReplicationMode replicationMode, int rf, int semiSyncAcks, int delayMinMs, int delayMaxMs,
+                         List<ShardInfo> shards) {
+        this.version = version;
+        this.configEpoch = configEpoch;
+        this.nodes = nodes;
+        this.nodeList = List.copyOf(nodes.values());
+        this.leaderNodeId = leaderNodeId;
+        this.replicationMode = replicationMode;
+        this.rf = rf;
+        this.semiSyncAcks = semiSyncAcks;
+        this.delayMinMs = delayMinMs;
+        this.delayMaxMs = delayMaxMs;
+        this.shards = shards;
+        this.effectiveShards = shards.isEmpty()
+                ? List.of(new ShardInfo(0, leaderNodeId, List.copyOf(nodes.keySet())))
+                : shards;
+        Map<Integer, List<NodeInfo>> byShard = new HashMap<>();
+        Map<Integer, Set<String>> idsByShard = new HashMap<>();
+        for (ShardInfo shard : effectiveShards) {
+            List<NodeInfo> shardFollowers = new ArrayList<>();
+            Set<String> ids = new LinkedHashSet<>();
+            for (String replica : shard.replicas()) {
+                NodeInfo node = nodes.get(replica);
+                if (node != null && !replica.equals(shard.leaderNodeId())) {
+                    shardFollowers.add(node);
+                    ids.add(replica);
+                }
+            }
+            byShard.put(shard.shardId(), List.copyOf(shardFollowers));
+            idsByShard.put(shard.shardId(), Collections.unmodifiableSet(ids));
+        }
+        this.followers = byShard;
+        this.followerIds = idsByShard;
     }
 
-    public synchronized Map<String, NodeInfo> getNodes() {
-        return Collections.unmodifiableMap(new LinkedHashMap<>(nodes));
+    private static Map<String, NodeInfo> index(Collection<NodeInfo> nodes) {
+        Map<String, NodeInfo> indexed = new LinkedHashMap<>();
+        for (NodeInfo node : nodes) {
+            indexed.put(node.nodeId(), node);
+        }
+        return Collections.unmodifiableMap(indexed);
     }
 
-    public synchronized Collection<NodeInfo> nodesValues() {
-        return ListUtil.copyValues(nodes);
+    public long version() {
+        return version;
     }
 
-    public synchronized Optional<NodeInfo> getNode(String nodeId) {
-        return Optional.ofNullable(nodes.get(nodeId));
+    public long configEpoch() {
+        return configEpoch;
     }
 
-    public synchronized String getLeaderNodeId() {
-        return leaderNodeId;
+    public boolean supersedes(ClusterState other) {
+        return configEpoch > other.configEpoch || (configEpoch == 0L && other.configEpoch == 0L);
     }
 
-    public synchronized void setLeaderNodeId(String leaderNodeId) {
-        this.leaderNodeId = leaderNodeId;
+    public ClusterState withVersion(long version) {
+        return new ClusterState(version, configEpoch, nodes, leaderNodeId, replicationMode, rf, semiSyncAcks, delayMinMs, delayMaxMs, shards);
     }
 
-    public synchronized ReplicationMode getReplicationMode() {
-        return replicationMode;
+    public Map<String, NodeInfo> getNodes() {
+        return nodes;
     }
 
-    public synchronized void setReplicationMode(ReplicationMode replicationMode) {
-        this.replicationMode = replicationMode;
+    public Collection<NodeInfo> nodesValues() {
+        return nodeList;
     }
 
-    public synchronized int getRf() {
-        return rf;
+    public Optional<NodeInfo> getNode(String nodeId) {
+        return Optional.ofNullable(nodes.get(nodeId));
     }
 
-    public synchronized void setRf(int rf) {
-        this.rf = rf;
+    public String getLeaderNodeId() {
+        return leaderNodeId;
     }
 
-    public synchronized int getSemiSyncAcks() {
-        return semiSyncAcks;
+    public ReplicationMode getReplicationMode() {
+        return replicationMode;
     }
 
-    public synchronized void setSemiSyncAcks(int semiSyncAcks) {
-        this.semiSyncAcks = semiSyncAcks;
+    public int getRf() {
+        return rf;
+    }
+
+    public int getSemiSyncAcks() {
+        return semiSyncAcks;
     }
 
-    public synchronized int getDelayMinMs() {
+    public int getDelayMinMs() {
         return delayMinMs;
     }
 
-    public synchronized int getDelayMaxMs() {
+    public int getDelayMaxMs() {
         return delayMaxMs;
     }
 
-    public synchronized void setDelayRangeMs(int min, int max) {
-        this.delayMinMs = min;
-        this.delayMaxMs = max;
+    public List<ShardInfo> getShards() {
+        return shards;
     }
 
-    public synchronized void applyFrom(ClusterState other) {
-        nodes.clear();
-        for (NodeInfo node : other.nodesValues()) {
-            nodes.put(node.nodeId(), node);
+    public ShardInfo shardFor(String key) {
+        if (shards.isEmpty()) {
+            return effectiveShards.get(0);
         }
-        this.leaderNodeId = other.getLeaderNodeId();
-        this.replicationMode = other.getReplicationMode();
-        this.rf = other.getRf();
-        this.semiSyncAcks = other.getSemiSyncAcks();
-        this.delayMinMs = other.getDelayMinMs();
-        this.delayMaxMs = other.getDelayMaxMs();
+        return shards.get(Sharding.shardOf(key, shards.size()));
     }
 
-    public synchronized ObjectNode toJson() {
+    public List<ShardInfo> effectiveShards() {
+        return effectiveShards;
+    }
+
+    public ShardInfo shard(int shardId) {
+        for (ShardInfo shard : effectiveShards) {
+            if (shard.shardId() == shardId) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    public List<NodeInfo> followers(int shardId) {
+        return followers.getOrDefault(shardId, List.of());
+    }
+
+    public Set<String> followerIds(int shardId) {
+        return followerIds.getOrDefault(shardId, Set.of());
+    }
+
+    public ClusterState withShardLeader(int shardId, String nodeId) {
+        if (shards.isEmpty()) {
+            return new ClusterState(version, configEpoch, nodes, nodeId, replicationMode, rf, semiSyncAcks, delayMinMs, delayMaxMs, shards);
+        }
+        List<ShardInfo> updated = new ArrayList<>(shards);
+        for (int i = 0; i < updated.size(); i++) {
+            ShardInfo shard = updated.get(i);
+            if (shard.shardId() == shardId) {
+                updated.set(i, new ShardInfo(shardId, nodeId, shard.replicas()));
+            }
+        }
+        return new ClusterState(version, configEpoch, nodes, leaderNodeId, replicationMode, rf, semiSyncAcks, delayMinMs,
+                delayMaxMs, List.copyOf(updated));
+    }
+
+    public boolean isLeaderOfAny(String nodeId) {
+        if (nodeId.equals(leaderNodeId)) {
+            return true;
+        }
+        for (ShardInfo shard : shards) {
+            if (nodeId.equals(shard.leaderNodeId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ObjectNode toJson() {
         ObjectNode root = JsonUtil.object();
         root.put(Constants.TYPE, Constants.CLUSTER_UPDATE);
+        root.put(Constants.CONFIG_EPOCH, configEpoch);
         ArrayNode array = root.putArray(Constants.NODES);
-        for (NodeInfo node : nodes.values()) {
+        for (NodeInfo node : nodeList) {
             array.add(node.toJson());
         }
         if (leaderNodeId != null) {
@@ -123,27 +214,41 @@ public final class ClusterState {
         root.put(Constants.SEMI_SYNC_ACKS, semiSyncAcks);
         root.put(Constants.DELAY_MIN_MS, delayMinMs);
         root.put(Constants.DELAY_MAX_MS, delayMaxMs);
+        ArrayNode shardArray = root.putArray(Constants.SHARDS);
+        for (ShardInfo shard : shards) {
+            shardArray.add(shard.toJson());
+        }
         return root;
     }
 
     public static ClusterState fromJson(ObjectNode root) {
-        ClusterState state = new ClusterState();
+        List<NodeInfo> nodes = new ArrayList<>();
         if (root.has(Constants.NODES)) {
             for (var node : root.withArray(Constants.NODES)) {
                 if (node instanceof ObjectNode obj) {
                     NodeInfo info = NodeInfo.fromJson(obj);
                     if (info.nodeId() != null) {
-                        state.upsertNode(info);
+                        nodes.add(info);
                     }
                 }
             }
         }
-        state.leaderNodeId = root.path(Constants.LEADER_ID).asText(null);
-        state.replicationMode = ReplicationMode.fromString(root.path(Constants.REPLICATION_MODE).asText(null));
-        state.rf = root.path(Constants.RF).asInt(1);
-        state.semiSyncAcks = root.path(Constants.SEMI_SYNC_ACKS).asInt(1);
-        state.delayMinMs = root.path(Constants.DELAY_MIN_MS).asInt(0);
-        state.delayMaxMs = root.path(Constants.DELAY_MAX_MS).asInt(0);
-        return state;
+        List<ShardInfo> shards = new ArrayList<>();
+        for (var shard : root.path(Constants.SHARDS)) {
+            if (shard instanceof ObjectNode obj) {
+                shards.add(ShardInfo.fromJson(obj));
+            }
+        }
+        shards.sort(Comparator.comparingInt(ShardInfo::shardId));
+        return new ClusterState(
+                root.path(Constants.CONFIG_EPOCH).asLong(0L),
+                nodes,
+                root.path(Constants.LEADER_ID).asText(null),
+                ReplicationMode.fromString(root.path(Constants.REPLICATION_MODE).asText(null)),
+                root.path(Constants.RF).asInt(1),
+                root.path(Constants.SEMI_SYNC_ACKS).asInt(1),
+                root.path(Constants.DELAY_MIN_MS).asInt(0),
+                root.path(Constants.DELAY_MAX_MS).asInt(0),
+                shards);
     }
 }
@@ -0,0 +1,50 @@
+package distr.common;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class ConnectionPool implements AutoCloseable {
+    private final ConcurrentHashMap<String, ClientConnection> connections = new ConcurrentHashMap<>();
+    private final int connectionsPerNode;
+    private final WireFormat format;
+
+    public ConnectionPool(int connectionsPerNode) {
+        this(connectionsPerNode, WireFormat.JSON);
+    }
+
+    public ConnectionPool(int connectionsPerNode, WireFormat format) {
+        this.connectionsPerNode = Math.max(1, connectionsPerNode);
+        this.format = format;
+    }
+
+    public ClientConnection get(String host, int port, int timeoutMs) throws IOException {
+        int slot = ThreadLocalRandom.current().nextInt(connectionsPerNode);
+        String key = host + ":" + port + "#" + slot;
+        ClientConnection existing = connections.get(key);
+        if (existing != null && existing.isOpen()) {
+            return existing;
+        }
+        ClientConnection opened = ClientConnection.open(host, port, format, timeoutMs);
+        while (true) {
+            ClientConnection current = connections.get(key);
+            boolean installed = current == null
+                    ? connections.putIfAbsent(key, opened) == null
+                    : !current.isOpen() && connections.replace(key, current, opened);
+            if (installed) {
+                return opened;
+            }
+            current = connections.get(key);
+            if (current != null && current.isOpen()) {
+                opened.close();
+                return current;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        connections.values().forEach(ClientConnection::close);
+        connections.clear();
+    }
+}
@@ -7,7 +7,16 @@ public final class Constants {
     public static final String STATUS = "status";
     public static final String ERROR_CODE = "errorCode";
     public static final String ERROR_MESSAGE = "errorMessage";
+    public static final String RETRY_AFTER_MS = "retryAfterMs";
+    public static final String READ_TOKEN = "readToken";
+    public static final String MAX_STALENESS_MS = "maxStalenessMs";
+    public static final String ENTRIES = "entries";
+    public static final String KEYS = "keys";
     public static final String LEADER_ID = "leaderNodeId";
+    public static final String SHARDS = "shards";
+    public static final String SHARD_ID = "shardId";
+    public static final String SHARD_COUNT = "shardCount";
+    public static final String REPLICAS = "replicas";
     public static final String VALUE = "value";
     public static final String KEY = "key";
     public static final String FOUND = "found";
@@ -15,16 +24,64 @@ public final class Constants {
     public static final String NODE_ID = "nodeId";
     public static final String HOST = "host";
     public static final String PORT = "port";
-    public static final String OP_ID = "operationId";
     public static final String ORIGIN_NODE_ID = "originNodeId";
     public static final String OP_TYPE = "operationType";
     public static final String SEQ = "seq";
     public static final String FROM_NODE_ID = "fromNodeId";
+    public static final String EPOCH = "epoch";
+    public static final String BASE_SEQ = "baseSeq";
+    public static final String FOLLOWER_EPOCH = "followerEpoch";
+    public static final String ACKED_SEQ = "ackedSeq";
+    public static final String SAFE_SEQ = "safeSeq";
+    public static final String OPS = "ops";
     public static final String REPLICATION_MODE = "replicationMode";
     public static final String RF = "rf";
     public static final String SEMI_SYNC_ACKS = "semiSyncAcks";
     public static final String DELAY_MIN_MS = "delayMinMs";
     public static final String DELAY_MAX_MS = "delayMaxMs";
+    public static final String TRANSPORT = "transport";
+    public static final String EXECUTION_MODE = "executionMode";
+    public static final String CONNECTIONS = "connections";
+    public static final String THREADS = "threads";
+    public static final String PEAK_THREADS = "peakThreads";
+    public static final String WIRE_FORMAT = "wireFormat";
+    public static final String FSYNC_POLICY = "fsyncPolicy";
+    public static final String STORAGE_ENGINE = "storageEngine";
+    public static final String STORE_KEYS = "storeKeys";
+    public static final String STORE_OFF_HEAP_BYTES = "storeOffHeapBytes";
+    public static final String LSM_TABLES = "lsmTables";
+    public static final String LSM_DISK_BYTES = "lsmDiskBytes";
+    public static final String LSM_FLUSHES = "lsmFlushes";
+    public static final String LSM_COMPACTIONS = "lsmCompactions";
+    public static final String STORE_COUNTS_ESTIMATED = "storeCountsEstimated";
+    public static final String TOMBSTONES = "tombstones";
+    public static final String TOMBSTONES_REAPED = "tombstonesReaped";
+    public static final String TOMBSTONE_BYTES_RECLAIMED = "tombstoneBytesReclaimed";
+    public static final String WAL_RECORDS = "walRecords";
+    public static final String WAL_SYNCS = "walSyncs";
+    public static final String WAL_SEGMENT = "walSegment";
+    public static final String SNAPSHOT_SEQ = "snapshotSeq";
+    public static final String REPL_WINDOW = "replWindow";
+    public static final String REPL_IN_FLIGHT = "replInFlight";
+    public static final String REPL_PENDING = "replPending";
+    public static final String REPL_REJECTED = "replRejected";
+    public static final String WRITE_BATCHES = "writeBatches";
+    public static final String WRITE_BATCH_OPS = "writeBatchOps";
+    public static final String READS_LOCAL = "readsLocal";
+    public static final String READS_FORWARDED = "readsForwarded";
+    public static final String LEASE_READS = "leaseReads";
+    public static final String QUORUM_READS = "quorumReads";
+    public static final String CLUSTER_VERSION = "clusterVersion";
+    public static final String CONFIG_EPOCH = "configEpoch";
+    public static final String GOSSIP_PULLS = "gossipPulls";
+    public static final String GOSSIP_PUSHES = "gossipPushes";
+    public static final String TERM = "term";
+    public static final String TERMS = "terms";
+    public static final String APPLIED_SEQ = "appliedSeq";
+    public static final String VOTE_GRANTED = "voteGranted";
+    public static final String PRE_VOTE = "preVote";
+    public static final String FORCE_LEADER = "forceLeader";
+    public static final String ELECTIONS = "elections";
     public static final String STATUS_OK = "OK";
     public static final String STATUS_ERROR = "ERROR";
     public static final String ERROR_NOT_LEADER = "NOT_LEADER";
@@ -32,19 +89,67 @@ public final class Constants {
     public static final String ERROR_TIMEOUT = "TIMEOUT";
     public static final String ERROR_BAD_REQUEST = "BAD_REQUEST";
     public static final String ERROR_UNKNOWN_NODE = "UNKNOWN_NODE";
+    public static final String ERROR_STORAGE = "STORAGE_ERROR";
+    public static final String ERROR_INTERNAL = "INTERNAL";
+    public static final String ERROR_OVERLOADED = "OVERLOADED";
+    public static final String ERROR_WRONG_SHARD = "WRONG_SHARD";
+    public static final String ERROR_STALE_READ = "STALE_READ";
+    public static final String ERROR_STALE_CONFIG = "STALE_CONFIG";
     public static final String CLIENT_PUT = "CLIENT_PUT";
     public static final String CLIENT_GET = "CLIENT_GET";
     public static final String CLIENT_DUMP = "CLIENT_DUMP";
     public static final String CLIENT_DELETE = "CLIENT_DELETE";
+    public static final String CLIENT_MPUT = "CLIENT_MPUT";
+    public static final String CLIENT_MGET = "CLIENT_MGET";
+    public static final String CLIENT_MDELETE = "CLIENT_MDELETE";
+    public static final String CLIENT_STATS = "CLIENT_STATS";
     public static final String CLUSTER_UPDATE = "CLUSTER_UPDATE";
-    public static final String REPL_PUT = "REPL_PUT";
-    public static final String REPL_DELETE = "REPL_DELETE";
+    public static final String REPL_BATCH = "REPL_BATCH";
     public static final String REPL_ACK = "REPL_ACK";
+    public static final String REPL_SNAPSHOT = "REPL_SNAPSHOT";
+    public static final String HEARTBEAT = "HEARTBEAT";
+    public static final String CONFIG_GOSSIP = "CONFIG_GOSSIP";
+    public static final String VOTE_REQUEST = "VOTE_REQUEST";
     public static final String PUT = "PUT";
     public static final String DELETE = "DELETE";
     public static final int DEFAULT_TIMEOUT_MS = 2000;
     public static final int RETRY_DELAY_MS = 200;
-    public static final long DEDUP_TTL_MS = 5 * 60 * 1000L;
+    public static final int SEQ_WINDOW_OPS = 16_384;
+    public static final int POOL_CONNECTIONS_PER_NODE = 4;
+    public static final long PEER_RECONNECT_MIN_MS = 50;
+    public static final long PEER_RECONNECT_MAX_MS = 2000;
+    public static final int REPL_BATCH_MAX_OPS = 512;
+    public static final int REPL_LOG_CAPACITY = 100_000;
+    public static final long REPL_STALL_MS = 1000;
+    public static final int REPL_WINDOW_OPS = 10_000;
+    public static final int MAX_BATCH_KEYS = 1024;
+    public static final long HEARTBEAT_INTERVAL_MS = 50;
+    public static final long DEFAULT_ELECTION_TIMEOUT_MS = 300;
+    public static final long DEFAULT_GOSSIP_INTERVAL_MS = 200;
+    public static final long DEFAULT_TOMBSTONE_REAP_INTERVAL_MS = 5000;
+    public static final int TOMBSTONE_REAP_MIN_SHARE = 64;
+    public static final int GOSSIP_FANOUT = 2;
+    public static final long LEASE_DRIFT_PERCENT = 10;
+    public static final int WRITE_QUEUE_CAPACITY = 65_536;
+    public static final int DEFAULT_WRITE_BATCH_MAX_OPS = 256;
+    public static final int NIO_BUFFER_BYTES = 64 * 1024;
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    public static final int WAL_QUEUE_CAPACITY = 65_536;
+    public static final long WAL_FSYNC_INTERVAL_MS = 10;
+    public static final String WAL_SEGMENT_PREFIX = "wal-";
+    public static final String WAL_SEGMENT_SUFFIX = ".log";
+    public static final String SNAPSHOT_FILE = "snapshot.bin";
+    public static final String EPOCH_FILE = "epoch";
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MS = 60_000;
+    public static final String LSM_DIR = "lsm";
+    public static final String LSM_TABLE_PREFIX = "sst-";
+    public static final String LSM_TABLE_SUFFIX = ".sst";
+    public static final long LSM_MEMTABLE_BYTES = 32L * 1024 * 1024;
+    public static final int LSM_BLOCK_BYTES = 4096;
+    public static final int LSM_BLOOM_BITS_PER_KEY = 10;
+    public static final int LSM_COMPACTION_TRIGGER = 4;
+    public static final byte BINARY_MAGIC = (byte) 0xB7;
+    public static final byte BINARY_PROTOCOL_VERSION = 1;
     private Constants() {
     }
 }
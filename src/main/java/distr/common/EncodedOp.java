@@ -0,0 +1,35 @@
+package distr.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+public final class EncodedOp {
+    private final ReplOp op;
+    private volatile String json;
+    private volatile byte[] binary;
+
+    public EncodedOp(ReplOp op) {
+        this.op = op;
+    }
+
+    public ReplOp op() {
+        return op;
+    }
+
+    public String json() throws JsonProcessingException {
+        String encoded = json;
+        if (encoded == null) {
+            encoded = JsonCodec.encodeOp(op);
+            json = encoded;
+        }
+        return encoded;
+    }
+
+    public byte[] binary() {
+        byte[] encoded = binary;
+        if (encoded == null) {
+            encoded = BinaryCodec.encodeOp(op);
+            binary = encoded;
+        }
+        return encoded;
+    }
+}
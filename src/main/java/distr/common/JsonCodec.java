@@ -0,0 +1,384 @@
+package distr.common;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class JsonCodec {
+    private static final JsonFactory FACTORY = JsonUtil.MAPPER.getFactory();
+
+    private JsonCodec() {
+    }
+
+    public static Message decode(String line) throws MalformedMessageException {
+        try (JsonParser parser = FACTORY.createParser(line)) {
+            return decode(parser, () -> JsonUtil.MAPPER.readTree(line));
+        } catch (IOException e) {
+            throw new MalformedMessageException("Invalid JSON", e);
+        }
+    }
+
+    public static Message decode(byte[] data, int offset, int length) throws MalformedMessageException {
+        try (JsonParser parser = FACTORY.createParser(data, offset, length)) {
+            return decode(parser, () -> JsonUtil.MAPPER.readTree(data, offset, length));
+        } catch (IOException e) {
+            throw new MalformedMessageException("Invalid JSON", e);
+        }
+    }
+
+    public static byte[] encodeLine(Message message) throws JsonProcessingException {
+        ByteArrayBuilder out = new ByteArrayBuilder(256);
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            write(generator, message);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        out.append('\n');
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeBatchLine(String originNodeId, long epoch, long baseSeq, long safeSeq, List<EncodedOp> ops,
+                                         boolean snapshot) throws JsonProcessingException {
+        ByteArrayBuilder out = new ByteArrayBuilder(128 + ops.size() * 96);
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField(Constants.TYPE, snapshot ? Constants.REPL_SNAPSHOT : Constants.REPL_BATCH);
+            writeString(generator, Constants.ORIGIN_NODE_ID, originNodeId);
+            generator.writeNumberField(Constants.EPOCH, epoch);
+            generator.writeNumberField(Constants.BASE_SEQ, baseSeq);
+            generator.writeNumberField(Constants.SAFE_SEQ, safeSeq);
+            generator.writeArrayFieldStart(Constants.OPS);
+            for (EncodedOp op : ops) {
+                generator.writeRawValue(op.json());
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        out.append('\n');
+        return out.toByteArray();
+    }
+
+    public static String encodeOp(ReplOp op) throws JsonProcessingException {
+        StringWriter out = new StringWriter(96);
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            writeOp(generator, op);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    public static Message fromTree(ObjectNode node) {
+        String type = node.path(Constants.TYPE).asText(null);
+        if (type == null) {
+            JsonNode value = node.get(Constants.VALUE);
+            JsonNode found = node.get(Constants.FOUND);
+            JsonNode retryAfter = node.get(Constants.RETRY_AFTER_MS);
+            JsonNode readToken = node.get(Constants.READ_TOKEN);
+            if (!node.has(Constants.STATUS) || (value != null && !value.isTextual()) || (found != null && !found.isBoolean())
+                    || (retryAfter != null && !retryAfter.canConvertToLong()) || (readToken != null && !readToken.isTextual())) {
+                return new JsonMessage(node);
+            }
+            return new ClientResponse(
+                    text(node, Constants.REQUEST_ID),
+                    text(node, Constants.STATUS),
+                    text(node, Constants.ERROR_CODE),
+                    text(node, Constants.ERROR_MESSAGE),
+                    text(node, Constants.LEADER_ID),
+                    found == null ? null : found.booleanValue(),
+                    text(node, Constants.VALUE),
+                    retryAfter == null ? null : retryAfter.longValue(),
+                    text(node, Constants.READ_TOKEN));
+        }
+        return switch (type) {
+            case Constants.CLIENT_PUT, Constants.CLIENT_GET, Constants.CLIENT_DELETE -> new ClientRequest(
+                    type,
+                    text(node, Constants.REQUEST_ID),
+                    text(node, Constants.CLIENT_ID),
+                    text(node, Constants.KEY),
+                    text(node, Constants.VALUE),
+                    text(node, Constants.READ_TOKEN),
+                    node.path(Constants.MAX_STALENESS_MS).canConvertToLong() ? node.get(Constants.MAX_STALENESS_MS).longValue() : null);
+            case Constants.REPL_BATCH, Constants.REPL_SNAPSHOT -> {
+                List<ReplOp> ops = new ArrayList<>();
+                for (JsonNode op : node.path(Constants.OPS)) {
+                    if (op instanceof ObjectNode obj) {
+                        ops.add(new ReplOp(
+                                text(obj, Constants.OP_TYPE),
+                                text(obj, Constants.KEY),
+                                obj.path(Constants.SEQ).asLong(0L),
+                                text(obj, Constants.VALUE)));
+                    }
+                }
+                yield new ReplBatch(
+                        text(node, Constants.ORIGIN_NODE_ID),
+                        node.path(Constants.EPOCH).asLong(0L),
+                        node.path(Constants.BASE_SEQ).asLong(0L),
+                        node.path(Constants.SAFE_SEQ).asLong(0L),
+                        ops,
+                        Constants.REPL_SNAPSHOT.equals(type));
+            }
+            case Constants.REPL_ACK -> new ReplAck(
+                    text(node, Constants.FROM_NODE_ID),
+                    node.path(Constants.EPOCH).asLong(0L),
+                    node.path(Constants.FOLLOWER_EPOCH).asLong(0L),
+                    node.path(Constants.ACKED_SEQ).asLong(0L));
+            default -> new JsonMessage(node);
+        };
+    }
+
+    public static ObjectNode toTree(Message message) {
+        if (message instanceof JsonMessage json) {
+            return json.node();
+        }
+        try {
+            return (ObjectNode) JsonUtil.MAPPER.readTree(encodeLine(message));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Message decode(JsonParser parser, TreeSource tree) throws IOException {
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            return null;
+        }
+        if (first != JsonToken.START_OBJECT) {
+            throw new MalformedMessageException("Expected JSON object");
+        }
+        String type = null;
+        String requestId = null;
+        String clientId = null;
+        String key = null;
+        String value = null;
+        String status = null;
+        String errorCode = null;
+        String errorMessage = null;
+        String leaderNodeId = null;
+        String originNodeId = null;
+        String fromNodeId = null;
+        Boolean found = null;
+        Long retryAfterMs = null;
+        String readToken = null;
+        Long maxStalenessMs = null;
+        long epoch = 0L;
+        long baseSeq = 0L;
+        long safeSeq = 0L;
+        long followerEpoch = 0L;
+        long ackedSeq = 0L;
+        List<ReplOp> ops = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (!streamable(field, parser)) {
+                return fromTree(tree);
+            }
+            switch (field) {
+                case Constants.TYPE -> type = readText(parser);
+                case Constants.REQUEST_ID -> requestId = readText(parser);
+                case Constants.CLIENT_ID -> clientId = readText(parser);
+                case Constants.KEY -> key = readText(parser);
+                case Constants.VALUE -> value = readText(parser);
+                case Constants.STATUS -> status = readText(parser);
+                case Constants.ERROR_CODE -> errorCode = readText(parser);
+                case Constants.ERROR_MESSAGE -> errorMessage = readText(parser);
+                case Constants.LEADER_ID -> leaderNodeId = readText(parser);
+                case Constants.ORIGIN_NODE_ID -> originNodeId = readText(parser);
+                case Constants.FROM_NODE_ID -> fromNodeId = readText(parser);
+                case Constants.FOUND -> found = parser.currentToken() == JsonToken.VALUE_TRUE;
+                case Constants.RETRY_AFTER_MS -> retryAfterMs = parser.getLongValue();
+                case Constants.READ_TOKEN -> readToken = readText(parser);
+                case Constants.MAX_STALENESS_MS -> maxStalenessMs = parser.getLongValue();
+                case Constants.EPOCH -> epoch = parser.getLongValue();
+                case Constants.BASE_SEQ -> baseSeq = parser.getLongValue();
+                case Constants.SAFE_SEQ -> safeSeq = parser.getLongValue();
+                case Constants.FOLLOWER_EPOCH -> followerEpoch = parser.getLongValue();
+                case Constants.ACKED_SEQ -> ackedSeq = parser.getLongValue();
+                default -> {
+                    ops = readOps(parser);
+                    if (ops == null) {
+                        return fromTree(tree);
+                    }
+                }
+            }
+        }
+        if (type == null) {
+            return status == null ? fromTree(tree) : new ClientResponse(requestId, status, errorCode, errorMessage, leaderNodeId, found, value, retryAfterMs, readToken);
+        }
+        return switch (type) {
+            case Constants.CLIENT_PUT, Constants.CLIENT_GET, Constants.CLIENT_DELETE ->
+                    new ClientRequest(type, requestId, clientId, key, value, readToken, maxStalenessMs);
+            case Constants.REPL_BATCH, Constants.REPL_SNAPSHOT ->
+                    new ReplBatch(originNodeId, epoch, baseSeq, safeSeq, ops == null ? List.of() : ops, Constants.REPL_SNAPSHOT.equals(type));
+            case Constants.REPL_ACK -> new ReplAck(fromNodeId, epoch, followerEpoch, ackedSeq);
+            default -> fromTree(tree);
+        };
+    }
+
+    private static Message fromTree(TreeSource tree) throws IOException {
+        JsonNode node = tree.read();
+        if (node instanceof ObjectNode obj) {
+            return fromTree(obj);
+        }
+        throw new MalformedMessageException("Expected JSON object");
+    }
+
+    private static List<ReplOp> readOps(JsonParser parser) throws IOException {
+        List<ReplOp> ops = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String opType = null;
+            String key = null;
+            String value = null;
+            long seq = 0L;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (!streamableOp(field, parser)) {
+                    return null;
+                }
+                switch (field) {
+                    case Constants.OP_TYPE -> opType = readText(parser);
+                    case Constants.KEY -> key = readText(parser);
+                    case Constants.VALUE -> value = readText(parser);
+                    default -> seq = parser.getLongValue();
+                }
+            }
+            ops.add(new ReplOp(opType, key, seq, value));
+        }
+        return parser.currentToken() == JsonToken.END_ARRAY ? ops : null;
+    }
+
+    private static boolean streamable(String field, JsonParser parser) throws IOException {
+        return switch (field) {
+            case Constants.TYPE, Constants.REQUEST_ID, Constants.CLIENT_ID, Constants.KEY, Constants.VALUE, Constants.STATUS,
+                 Constants.ERROR_CODE, Constants.ERROR_MESSAGE, Constants.LEADER_ID, Constants.ORIGIN_NODE_ID,
+                 Constants.FROM_NODE_ID, Constants.READ_TOKEN -> isText(parser);
+            case Constants.FOUND -> parser.currentToken() == JsonToken.VALUE_TRUE || parser.currentToken() == JsonToken.VALUE_FALSE;
+            case Constants.RETRY_AFTER_MS, Constants.MAX_STALENESS_MS, Constants.EPOCH, Constants.BASE_SEQ,
+                 Constants.SAFE_SEQ, Constants.FOLLOWER_EPOCH, Constants.ACKED_SEQ -> isLong(parser);
+            case Constants.OPS -> parser.currentToken() == JsonToken.START_ARRAY;
+            default -> false;
+        };
+    }
+
+    private static boolean streamableOp(String field, JsonParser parser) throws IOException {
+        return switch (field) {
+            case Constants.OP_TYPE, Constants.KEY, Constants.VALUE -> isText(parser);
+            case Constants.SEQ -> isLong(parser);
+            default -> false;
+        };
+    }
+
+    private static boolean isText(JsonParser parser) {
+        return parser.currentToken() == JsonToken.VALUE_STRING || parser.currentToken() == JsonToken.VALUE_NULL;
+    }
+
+    private static boolean isLong(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER;
+    }
+
+    private static String readText(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    private static void write(JsonGenerator generator, Message message) throws IOException {
+        switch (message) {
+            case ClientRequest request -> {
+                generator.writeStartObject();
+                writeString(generator, Constants.TYPE, request.type());
+                writeString(generator, Constants.REQUEST_ID, request.requestId());
+                writeString(generator, Constants.CLIENT_ID, request.clientId());
+                writeString(generator, Constants.KEY, request.key());
+                writeString(generator, Constants.VALUE, request.value());
+                writeString(generator, Constants.READ_TOKEN, request.readToken());
+                if (request.maxStalenessMs() != null) {
+                    generator.writeNumberField(Constants.MAX_STALENESS_MS, request.maxStalenessMs());
+                }
+                generator.writeEndObject();
+            }
+            case ClientResponse response -> {
+                generator.writeStartObject();
+                writeString(generator, Constants.REQUEST_ID, response.requestId());
+                writeString(generator, Constants.STATUS, response.status());
+                writeString(generator, Constants.ERROR_CODE, response.errorCode());
+                writeString(generator, Constants.ERROR_MESSAGE, response.errorMessage());
+                writeString(generator, Constants.LEADER_ID, response.leaderNodeId());
+                if (response.found() != null) {
+                    generator.writeBooleanField(Constants.FOUND, response.found());
+                }
+                writeString(generator, Constants.VALUE, response.value());
+                if (response.retryAfterMs() != null) {
+                    generator.writeNumberField(Constants.RETRY_AFTER_MS, response.retryAfterMs());
+                }
+                writeString(generator, Constants.READ_TOKEN, response.readToken());
+                generator.writeEndObject();
+            }
+            case ReplBatch batch -> {
+                generator.writeStartObject();
+                generator.writeStringField(Constants.TYPE, batch.snapshot() ? Constants.REPL_SNAPSHOT : Constants.REPL_BATCH);
+                writeString(generator, Constants.ORIGIN_NODE_ID, batch.originNodeId());
+                generator.writeNumberField(Constants.EPOCH, batch.epoch());
+                generator.writeNumberField(Constants.BASE_SEQ, batch.baseSeq());
+                generator.writeNumberField(Constants.SAFE_SEQ, batch.safeSeq());
+                generator.writeArrayFieldStart(Constants.OPS);
+                for (ReplOp op : batch.ops()) {
+                    writeOp(generator, op);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            case ReplAck ack -> {
+                generator.writeStartObject();
+                generator.writeStringField(Constants.TYPE, Constants.REPL_ACK);
+                writeString(generator, Constants.FROM_NODE_ID, ack.fromNodeId());
+                generator.writeNumberField(Constants.EPOCH, ack.epoch());
+                generator.writeNumberField(Constants.FOLLOWER_EPOCH, ack.followerEpoch());
+                generator.writeNumberField(Constants.ACKED_SEQ, ack.ackedSeq());
+                generator.writeEndObject();
+            }
+            case JsonMessage json -> JsonUtil.MAPPER.writeTree(generator, json.node());
+        }
+    }
+
+    private static void writeOp(JsonGenerator generator, ReplOp op) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, Constants.OP_TYPE, op.opType());
+        writeString(generator, Constants.KEY, op.key());
+        generator.writeNumberField(Constants.SEQ, op.seq());
+        writeString(generator, Constants.VALUE, op.value());
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        }
+    }
+
+    private static String text(ObjectNode node, String field) {
+        return node.path(field).asText(null);
+    }
+
+    @FunctionalInterface
+    private interface TreeSource {
+        JsonNode read() throws IOException;
+    }
+}
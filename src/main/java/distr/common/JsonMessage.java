@@ -0,0 +1,14 @@
+package distr.common;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public record JsonMessage(ObjectNode node) implements Message {
+    public String type() {
+        return node.path(Constants.TYPE).asText(null);
+    }
+
+    @Override
+    public String requestId() {
+        return node.path(Constants.REQUEST_ID).asText(null);
+    }
+}
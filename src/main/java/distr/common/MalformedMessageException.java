@@ -0,0 +1,15 @@
+package distr.common;
+
+import java.io.IOException;
+
+public final class MalformedMessageException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedMessageException(String message) {
+        super(message);
+    }
+
+    public MalformedMessageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,5 @@
+package distr.common;
+
+public sealed interface Message permits ClientRequest, ClientResponse, ReplBatch, ReplAck, JsonMessage {
+    String requestId();
+}
@@ -0,0 +1,19 @@
+package distr.common;
+
+public record ReadToken(String originNodeId, long seq) {
+    public static ReadToken fromString(String value) {
+        int separator = value == null ? -1 : value.lastIndexOf(':');
+        if (separator <= 0 || separator == value.length() - 1) {
+            throw new IllegalArgumentException("Invalid read token: " + value);
+        }
+        try {
+            return new ReadToken(value.substring(0, separator), Long.parseLong(value.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid read token: " + value, e);
+        }
+    }
+
+    public String toWire() {
+        return originNodeId + ":" + seq;
+    }
+}
@@ -0,0 +1,8 @@
+package distr.common;
+
+public record ReplAck(String fromNodeId, long epoch, long followerEpoch, long ackedSeq) implements Message {
+    @Override
+    public String requestId() {
+        return null;
+    }
+}
@@ -0,0 +1,10 @@
+package distr.common;
+
+import java.util.List;
+
+public record ReplBatch(String originNodeId, long epoch, long baseSeq, long safeSeq, List<ReplOp> ops, boolean snapshot) implements Message {
+    @Override
+    public String requestId() {
+        return null;
+    }
+}
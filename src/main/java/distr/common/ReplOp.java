@@ -0,0 +1,7 @@
+package distr.common;
+
+public record ReplOp(String opType, String key, long seq, String value) {
+    public boolean isPut() {
+        return Constants.PUT.equals(opType);
+    }
+}
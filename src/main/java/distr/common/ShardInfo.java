@@ -0,0 +1,34 @@
+package distr.common;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public record ShardInfo(int shardId, String leaderNodeId, List<String> replicas) {
+    public boolean isReplica(String nodeId) {
+        return replicas.contains(nodeId);
+    }
+
+    public ObjectNode toJson() {
+        ObjectNode node = JsonUtil.object();
+        node.put(Constants.SHARD_ID, shardId);
+        if (leaderNodeId != null) {
+            node.put(Constants.LEADER_ID, leaderNodeId);
+        }
+        ArrayNode array = node.putArray(Constants.REPLICAS);
+        for (String replica : replicas) {
+            array.add(replica);
+        }
+        return node;
+    }
+
+    public static ShardInfo fromJson(ObjectNode node) {
+        List<String> replicas = new ArrayList<>();
+        for (var replica : node.path(Constants.REPLICAS)) {
+            replicas.add(replica.asText());
+        }
+        return new ShardInfo(node.path(Constants.SHARD_ID).asInt(-1), node.path(Constants.LEADER_ID).asText(null), List.copyOf(replicas));
+    }
+}
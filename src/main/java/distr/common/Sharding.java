@@ -0,0 +1,30 @@
+package distr.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Sharding {
+    private Sharding() {
+    }
+
+    public static int shardOf(String key, int shardCount) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    public static List<ShardInfo> assign(List<String> nodeIds, int shardCount, int rf) {
+        List<ShardInfo> shards = new ArrayList<>(shardCount);
+        if (nodeIds.isEmpty()) {
+            return shards;
+        }
+        int replicaCount = Math.min(Math.max(1, rf), nodeIds.size());
+        for (int shard = 0; shard < shardCount; shard++) {
+            List<String> replicas = new ArrayList<>(replicaCount);
+            for (int i = 0; i < replicaCount; i++) {
+                replicas.add(nodeIds.get((shard + i) % nodeIds.size()));
+            }
+            shards.add(new ShardInfo(shard, replicas.get(0), List.copyOf(replicas)));
+        }
+        return shards;
+    }
+}
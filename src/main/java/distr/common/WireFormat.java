@@ -0,0 +1,24 @@
+package distr.common;
+
+public enum WireFormat {
+    JSON,
+    BINARY;
+
+    public static WireFormat fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase()) {
+            case "json" -> JSON;
+            case "binary" -> BINARY;
+            default -> null;
+        };
+    }
+
+    public String toWire() {
+        return switch (this) {
+            case JSON -> "json";
+            case BINARY -> "binary";
+        };
+    }
+}
@@ -0,0 +1,173 @@
+package distr.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public final class WireStream implements Closeable {
+    private final Socket socket;
+    private final WireFormat format;
+    private final BufferedReader reader;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private WireStream(Socket socket, WireFormat format, InputStream in) throws IOException {
+        this.socket = socket;
+        this.format = format;
+        this.reader = format == WireFormat.JSON ? new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)) : null;
+        this.in = format == WireFormat.BINARY ? new DataInputStream(in) : null;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), Constants.NIO_BUFFER_BYTES));
+    }
+
+    public static WireStream connect(String host, int port, WireFormat preferred, int timeoutMs) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            socket.setTcpNoDelay(true);
+            InputStream input = new BufferedInputStream(socket.getInputStream(), Constants.NIO_BUFFER_BYTES);
+            if (preferred != WireFormat.BINARY) {
+                return new WireStream(socket, WireFormat.JSON, input);
+            }
+            if (negotiate(socket, input, timeoutMs)) {
+                return new WireStream(socket, WireFormat.BINARY, input);
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        socket.close();
+        return connect(host, port, WireFormat.JSON, timeoutMs);
+    }
+
+    public static WireStream accept(Socket socket) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(socket.getInputStream(), Constants.NIO_BUFFER_BYTES);
+        input.mark(1);
+        int first = input.read();
+        if (first != (Constants.BINARY_MAGIC & 0xFF)) {
+            input.reset();
+            return new WireStream(socket, WireFormat.JSON, input);
+        }
+        int version = input.read();
+        if (version < 0) {
+            throw new EOFException("Connection closed during handshake");
+        }
+        byte agreed = (byte) Math.min(version, Constants.BINARY_PROTOCOL_VERSION);
+        socket.getOutputStream().write(new byte[]{Constants.BINARY_MAGIC, agreed});
+        socket.getOutputStream().flush();
+        if (agreed < 1) {
+            throw new IOException("Unsupported binary protocol version " + version);
+        }
+        return new WireStream(socket, WireFormat.BINARY, input);
+    }
+
+    public static byte[] frame(Message message, WireFormat format) throws JsonProcessingException {
+        if (format == WireFormat.JSON) {
+            return JsonCodec.encodeLine(message);
+        }
+        return lengthPrefixed(BinaryCodec.encode(message));
+    }
+
+    public static byte[] frameBatch(String originNodeId, long epoch, long baseSeq, long safeSeq, List<EncodedOp> ops,
+                                    boolean snapshot, WireFormat format) throws JsonProcessingException {
+        if (format == WireFormat.JSON) {
+            return JsonCodec.encodeBatchLine(originNodeId, epoch, baseSeq, safeSeq, ops, snapshot);
+        }
+        return lengthPrefixed(BinaryCodec.encodeBatch(originNodeId, epoch, baseSeq, safeSeq, ops, snapshot));
+    }
+
+    public WireFormat format() {
+        return format;
+    }
+
+    public Message read() throws IOException {
+        if (format == WireFormat.JSON) {
+            while (true) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                Message message = JsonCodec.decode(line);
+                if (message != null) {
+                    return message;
+                }
+            }
+        }
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > Constants.MAX_FRAME_BYTES) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return BinaryCodec.decode(payload);
+    }
+
+    public void write(Message message) throws IOException {
+        writeFrame(frame(message, format));
+    }
+
+    public void writeBatch(String originNodeId, long epoch, long baseSeq, long safeSeq, List<EncodedOp> ops, boolean snapshot)
+            throws IOException {
+        writeFrame(frameBatch(originNodeId, epoch, baseSeq, safeSeq, ops, snapshot, format));
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void writeFrame(byte[] bytes) throws IOException {
+        synchronized (out) {
+            out.write(bytes);
+            out.flush();
+        }
+    }
+
+    private static byte[] lengthPrefixed(byte[] payload) {
+        byte[] framed = new byte[payload.length + 4];
+        framed[0] = (byte) (payload.length >>> 24);
+        framed[1] = (byte) (payload.length >>> 16);
+        framed[2] = (byte) (payload.length >>> 8);
+        framed[3] = (byte) payload.length;
+        System.arraycopy(payload, 0, framed, 4, payload.length);
+        return framed;
+    }
+
+    private static boolean negotiate(Socket socket, InputStream input, int timeoutMs) throws IOException {
+        socket.getOutputStream().write(new byte[]{Constants.BINARY_MAGIC, Constants.BINARY_PROTOCOL_VERSION});
+        socket.getOutputStream().flush();
+        socket.setSoTimeout(timeoutMs);
+        try {
+            int magic = input.read();
+            int version = input.read();
+            return magic == (Constants.BINARY_MAGIC & 0xFF) && version >= 1;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } finally {
+            if (!socket.isClosed()) {
+                socket.setSoTimeout(0);
+            }
+        }
+    }
+}
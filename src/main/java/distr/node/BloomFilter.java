@@ -0,0 +1,74 @@
+package distr.node;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public final class BloomFilter {
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+    private final long[] bits;
+    private final int hashes;
+
+    private BloomFilter(long[] bits, int hashes) {
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    public static BloomFilter create(long expectedKeys, int bitsPerKey) {
+        long blocks = Math.max(1L, (expectedKeys * bitsPerKey + BLOCK_BITS - 1) / BLOCK_BITS);
+        int words = (int) Math.min((Integer.MAX_VALUE - 8) / BLOCK_WORDS * BLOCK_WORDS, blocks * BLOCK_WORDS);
+        int hashes = Math.max(1, (int) Math.round(bitsPerKey * Math.log(2)));
+        return new BloomFilter(new long[words], hashes);
+    }
+
+    public void add(String key) {
+        long hash = hash(key);
+        int base = block(hash);
+        int bit = (int) hash;
+        int step = (int) (hash >>> Integer.SIZE - 9) | 1;
+        for (int i = 0; i < hashes; i++, bit += step) {
+            bits[base + ((bit & (BLOCK_BITS - 1)) >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int base = block(hash);
+        int bit = (int) hash;
+        int step = (int) (hash >>> Integer.SIZE - 9) | 1;
+        for (int i = 0; i < hashes; i++, bit += step) {
+            if ((bits[base + ((bit & (BLOCK_BITS - 1)) >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(hashes);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    public static BloomFilter readFrom(ByteBuffer buffer) {
+        int hashes = buffer.getInt();
+        long[] bits = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(bits);
+        buffer.position(buffer.position() + bits.length * Long.BYTES);
+        return new BloomFilter(bits, hashes);
+    }
+
+    private int block(long hash) {
+        return (int) (Integer.toUnsignedLong((int) (hash >>> Integer.SIZE)) % (bits.length / BLOCK_WORDS)) * BLOCK_WORDS;
+    }
+
+    private static long hash(String key) {
+        long hash = key.hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return hash ^ (hash >>> 32);
+    }
+}
@@ -0,0 +1,154 @@
+package distr.node;
+
+import distr.common.ClusterState;
+import distr.common.ConnectionPool;
+import distr.common.Constants;
+import distr.common.JsonUtil;
+import distr.common.NodeInfo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class ConfigGossip {
+    private static final Logger LOG = Logger.getLogger(ConfigGossip.class.getName());
+    private final NodeContext context;
+    private final long intervalMs;
+    private final int requestTimeoutMs;
+    private final AtomicLong pulls = new AtomicLong();
+    private final AtomicLong pushes = new AtomicLong();
+    private final Set<String> busyPeers = ConcurrentHashMap.newKeySet();
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gossip");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService io = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "gossip-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ConfigGossip(NodeContext context, long intervalMs) {
+        this.context = context;
+        this.intervalMs = intervalMs;
+        this.requestTimeoutMs = (int) Math.min(Constants.DEFAULT_TIMEOUT_MS, Math.max(intervalMs * 5, 100L));
+        this.pool = new ConnectionPool(1, context.config().peerWireFormat());
+    }
+
+    public void start() {
+        if (intervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::roundQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public long pulls() {
+        return pulls.get();
+    }
+
+    public long pushes() {
+        return pushes.get();
+    }
+
+    public boolean apply(ClusterState incoming, boolean force, long term) {
+        boolean changed = context.updateCluster(current -> incoming.supersedes(current)
+                ? context.elector().reconcile(current, incoming, force, term)
+                : current);
+        if (changed) {
+            context.peers().retain(context.clusterState().getNodes());
+            if (force) {
+                context.elector().takeOver();
+            }
+        }
+        return changed;
+    }
+
+    public ObjectNode onGossip(ObjectNode request, String requestId) {
+        ObjectNode response = JsonUtil.object();
+        if (requestId != null) {
+            response.put(Constants.REQUEST_ID, requestId);
+        }
+        response.put(Constants.STATUS, Constants.STATUS_OK);
+        ClusterState cluster = context.clusterState();
+        if (cluster.configEpoch() > request.path(Constants.CONFIG_EPOCH).asLong(0L)) {
+            response.set(Constants.VALUE, cluster.toJson());
+        } else {
+            response.putObject(Constants.VALUE).put(Constants.CONFIG_EPOCH, cluster.configEpoch());
+        }
+        return response;
+    }
+
+    private void roundQuietly() {
+        try {
+            round();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Gossip round failed", e);
+        }
+    }
+
+    private void round() {
+        List<NodeInfo> peers = new ArrayList<>();
+        for (NodeInfo node : context.clusterState().nodesValues()) {
+            if (!node.nodeId().equals(context.nodeId())) {
+                peers.add(node);
+            }
+        }
+        Collections.shuffle(peers, ThreadLocalRandom.current());
+        for (NodeInfo node : peers.subList(0, Math.min(Constants.GOSSIP_FANOUT, peers.size()))) {
+            exchangeAsync(node);
+        }
+    }
+
+    private void exchangeAsync(NodeInfo node) {
+        if (!busyPeers.add(node.nodeId())) {
+            return;
+        }
+        io.execute(() -> {
+            try {
+                exchange(node);
+            } finally {
+                busyPeers.remove(node.nodeId());
+            }
+        });
+    }
+
+    private void exchange(NodeInfo node) {
+        ClusterState mine = context.clusterState();
+        ObjectNode request = JsonUtil.object();
+        request.put(Constants.TYPE, Constants.CONFIG_GOSSIP);
+        request.put(Constants.FROM_NODE_ID, context.nodeId());
+        request.put(Constants.CONFIG_EPOCH, mine.configEpoch());
+        try {
+            JsonNode theirs = pool.get(node.host(), node.port(), requestTimeoutMs)
+                    .request(request, requestTimeoutMs).path(Constants.VALUE);
+            long epoch = theirs.path(Constants.CONFIG_EPOCH).asLong(0L);
+            if (epoch > mine.configEpoch() && theirs instanceof ObjectNode config && config.has(Constants.NODES)) {
+                if (apply(ClusterState.fromJson(config), false, 0L)) {
+                    pulls.incrementAndGet();
+                    LOG.info("Learned config epoch " + epoch + " from " + node.nodeId());
+                }
+            } else if (epoch < mine.configEpoch()) {
+                pool.get(node.host(), node.port(), requestTimeoutMs).request(mine.toJson(), requestTimeoutMs);
+                pushes.incrementAndGet();
+                LOG.fine("Pushed config epoch " + mine.configEpoch() + " to " + node.nodeId());
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Gossip with " + node.nodeId() + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package distr.node;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public enum ExecutionMode {
+    CACHED,
+    VIRTUAL;
+
+    public static ExecutionMode fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase()) {
+            case "cached" -> CACHED;
+            case "virtual" -> VIRTUAL;
+            default -> null;
+        };
+    }
+
+    public String toWire() {
+        return switch (this) {
+            case CACHED -> "cached";
+            case VIRTUAL -> "virtual";
+        };
+    }
+
+    public ExecutorService newExecutor() {
+        return switch (this) {
+            case CACHED -> Executors.newCachedThreadPool();
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("conn-", 0).factory());
+        };
+    }
+}
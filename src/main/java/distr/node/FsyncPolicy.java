@@ -0,0 +1,30 @@
+package distr.node;
+
+public enum FsyncPolicy {
+    ALWAYS,
+    GROUP,
+    INTERVAL,
+    NONE;
+
+    public static FsyncPolicy fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase()) {
+            case "always" -> ALWAYS;
+            case "group" -> GROUP;
+            case "interval" -> INTERVAL;
+            case "none" -> NONE;
+            default -> null;
+        };
+    }
+
+    public String toWire() {
+        return switch (this) {
+            case ALWAYS -> "always";
+            case GROUP -> "group";
+            case INTERVAL -> "interval";
+            case NONE -> "none";
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package distr.node;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+public final class HeapNodeStore implements NodeStore {
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private final ConcurrentHashMap<String, ValueEntry> map = new ConcurrentHashMap<>();
+    private final WriteAheadLog wal;
+    private final AtomicLong maxSeq = new AtomicLong();
+    private final AtomicLong tombstones = new AtomicLong();
+    private final AtomicLong tombstonesReaped = new AtomicLong();
+    private final AtomicLong tombstoneBytesReclaimed = new AtomicLong();
+
+    public HeapNodeStore() {
+        this(null);
+    }
+
+    public HeapNodeStore(WriteAheadLog wal) {
+        this.wal = wal;
+    }
+
+    @Override
+    public WriteAheadLog wal() {
+        return wal;
+    }
+
+    @Override
+    public void restore(String key, ValueEntry entry) {
+        map.compute(key, (k, existing) -> {
+            if (existing == null || entry.seq() >= existing.seq()) {
+                boolean wasTombstone = existing != null && existing.tombstone();
+                if (entry.tombstone() != wasTombstone) {
+                    tombstones.addAndGet(entry.tombstone() ? 1 : -1);
+                }
+                return entry;
+            }
+            return existing;
+        });
+        if (entry.seq() > maxSeq.get()) {
+            maxSeq.accumulateAndGet(entry.seq(), Math::max);
+        }
+    }
+
+    @Override
+    public ValueEntry get(String key) {
+        return map.get(key);
+    }
+
+    @Override
+    public long maxSeq() {
+        return maxSeq.get();
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return 0L;
+    }
+
+    @Override
+    public long tombstones() {
+        return tombstones.get();
+    }
+
+    @Override
+    public long tombstonesReaped() {
+        return tombstonesReaped.get();
+    }
+
+    @Override
+    public long tombstoneBytesReclaimed() {
+        return tombstoneBytesReclaimed.get();
+    }
+
+    @Override
+    public long reapTombstones(ToLongFunction<String> safeSeq) {
+        long newest = maxSeq.get();
+        long reaped = 0L;
+        long bytes = 0L;
+        for (Map.Entry<String, ValueEntry> entry : map.entrySet()) {
+            ValueEntry value = entry.getValue();
+            if (value.tombstone() && value.seq() < newest && value.seq() <= safeSeq.applyAsLong(entry.getKey())
+                    && map.remove(entry.getKey(), value)) {
+                tombstones.decrementAndGet();
+                reaped++;
+                bytes += ENTRY_OVERHEAD_BYTES + entry.getKey().length();
+            }
+        }
+        tombstonesReaped.addAndGet(reaped);
+        tombstoneBytesReclaimed.addAndGet(bytes);
+        return reaped;
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, ValueEntry>> entries() {
+        return map.entrySet();
+    }
+
+    @Override
+    public Map<String, String> dump() {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (var entry : map.entrySet()) {
+            if (!entry.getValue().tombstone()) {
+                out.put(entry.getKey(), entry.getValue().value());
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,538 @@
+package distr.node;
+
+import distr.common.ClusterState;
+import distr.common.ConnectionPool;
+import distr.common.Constants;
+import distr.common.JsonUtil;
+import distr.common.NodeInfo;
+import distr.common.ShardInfo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class LeaderElector {
+    private static final Logger LOG = Logger.getLogger(LeaderElector.class.getName());
+    private final NodeContext context;
+    private final long timeoutMs;
+    private final long requestTimeoutMs;
+    private final long leaseMs;
+    private final ConcurrentHashMap<Integer, Group> groups = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LeaderMark> marks = new ConcurrentHashMap<>();
+    private final Set<String> busyPeers = ConcurrentHashMap.newKeySet();
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "election");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService io = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "election-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LeaderElector(NodeContext context, long timeoutMs) {
+        this.context = context;
+        this.timeoutMs = timeoutMs;
+        this.requestTimeoutMs = timeoutMs > 0 ? timeoutMs : Constants.DEFAULT_TIMEOUT_MS;
+        this.leaseMs = context.config().leaseReads() ? timeoutMs * (100 - Constants.LEASE_DRIFT_PERCENT) / 100 : 0L;
+        this.pool = new ConnectionPool(1, context.config().peerWireFormat());
+    }
+
+    public void start() {
+        if (timeoutMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::tickQuietly, Constants.HEARTBEAT_INTERVAL_MS, Constants.HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public long term(int shardId) {
+        Group group = groups.get(shardId);
+        return group == null ? 0L : group.term();
+    }
+
+    public long stalenessMs(String leaderNodeId) {
+        LeaderMark mark = leaderNodeId == null ? null : marks.get(leaderNodeId);
+        if (mark == null || context.appliedSeq(leaderNodeId) < mark.seq()) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() - mark.receivedAtMs();
+    }
+
+    public boolean holdsLease(ShardInfo shard) {
+        if (!context.nodeId().equals(shard.leaderNodeId())) {
+            return false;
+        }
+        Group group = group(shard.shardId());
+        long since = quorumSince(shard, group);
+        return since != Long.MIN_VALUE && since + leaseMs > System.currentTimeMillis();
+    }
+
+    public CompletableFuture<Boolean> confirmLeadership(ShardInfo shard) {
+        Group group = group(shard.shardId());
+        long term = group.term();
+        long start = System.currentTimeMillis();
+        ClusterState cluster = context.clusterState();
+        List<CompletableFuture<Void>> round = new ArrayList<>();
+        for (String replica : shard.replicas()) {
+            NodeInfo node = cluster.getNode(replica).orElse(null);
+            if (node != null && !replica.equals(context.nodeId())) {
+                round.add(CompletableFuture.runAsync(() -> heartbeat(node, Map.of(shard.shardId(), term)), io));
+            }
+        }
+        return CompletableFuture.allOf(round.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> context.nodeId().equals(shard.leaderNodeId()) && group.term() == term
+                        && quorumSince(shard, group) >= start);
+    }
+
+    private long quorumSince(ShardInfo shard, Group group) {
+        int needed = shard.replicas().size() / 2;
+        if (needed == 0) {
+            return Long.MAX_VALUE - leaseMs;
+        }
+        long term = group.term();
+        List<Long> sent = new ArrayList<>();
+        for (String replica : shard.replicas()) {
+            Ack ack = group.acks.get(replica);
+            if (ack != null && ack.term() == term && !replica.equals(context.nodeId())) {
+                sent.add(ack.sentAtMs());
+            }
+        }
+        if (sent.size() < needed) {
+            return Long.MIN_VALUE;
+        }
+        sent.sort(Comparator.reverseOrder());
+        return sent.get(needed - 1);
+    }
+
+    public ClusterState reconcile(ClusterState current, ClusterState incoming, boolean force, long term) {
+        ClusterState reconciled = incoming;
+        long now = System.currentTimeMillis();
+        for (ShardInfo shard : incoming.effectiveShards()) {
+            Group group = group(shard.shardId());
+            ShardInfo local = current.shard(shard.shardId());
+            synchronized (group) {
+                group.touch(now);
+                if (force) {
+                    group.term = Math.max(group.term, term);
+                    group.votedFor = null;
+                } else if (group.term > 0 && local != null && local.leaderNodeId() != null && shard.isReplica(local.leaderNodeId())) {
+                    reconciled = reconciled.withShardLeader(shard.shardId(), local.leaderNodeId());
+                }
+            }
+        }
+        return reconciled;
+    }
+
+    public void takeOver() {
+        io.execute(() -> {
+            Map<Integer, Long> terms = new TreeMap<>();
+            for (ShardInfo shard : context.clusterState().effectiveShards()) {
+                if (context.nodeId().equals(shard.leaderNodeId())) {
+                    terms.put(shard.shardId(), group(shard.shardId()).term());
+                }
+            }
+            if (terms.isEmpty()) {
+                return;
+            }
+            long seqFloor = context.store().maxSeq();
+            LOG.info("Forced leader of shards " + terms.keySet() + " at terms " + terms.values() + ", seq floor " + seqFloor);
+            becomeLeader(terms, seqFloor);
+        });
+    }
+
+    public ObjectNode onHeartbeat(ObjectNode request, String requestId) {
+        String from = request.path(Constants.FROM_NODE_ID).asText(null);
+        ObjectNode response = response(requestId);
+        ObjectNode terms = response.putObject(Constants.VALUE);
+        long now = System.currentTimeMillis();
+        if (from != null && request.has(Constants.SEQ)) {
+            marks.put(from, new LeaderMark(request.path(Constants.SEQ).asLong(), now));
+        }
+        for (Map.Entry<String, JsonNode> entry : request.path(Constants.TERMS).properties()) {
+            int shardId = Integer.parseInt(entry.getKey());
+            long term = entry.getValue().asLong(-1L);
+            Group group = group(shardId);
+            boolean accepted = false;
+            synchronized (group) {
+                if (from != null && term >= group.term) {
+                    if (term > group.term) {
+                        group.term = term;
+                        group.votedFor = null;
+                    }
+                    group.touch(now);
+                    accepted = true;
+                }
+                terms.put(entry.getKey(), group.term);
+            }
+            if (accepted) {
+                follow(shardId, from, term);
+            }
+        }
+        return response;
+    }
+
+    public ObjectNode onVoteRequest(ObjectNode request, String requestId) {
+        String candidate = request.path(Constants.FROM_NODE_ID).asText(null);
+        int shardId = request.path(Constants.SHARD_ID).asInt(-1);
+        long term = request.path(Constants.TERM).asLong(-1L);
+        long candidateApplied = request.path(Constants.APPLIED_SEQ).asLong(0L);
+        String previous = request.path(Constants.LEADER_ID).asText(null);
+        boolean preVote = request.path(Constants.PRE_VOTE).asBoolean(false);
+        ShardInfo shard = context.clusterState().shard(shardId);
+        long applied = context.appliedSeq(previous);
+        Group group = group(shardId);
+        boolean granted = false;
+        long current;
+        synchronized (group) {
+            long now = System.currentTimeMillis();
+            boolean leaderAlive = shard != null && shard.leaderNodeId() != null && !shard.leaderNodeId().equals(candidate)
+                    && (shard.leaderNodeId().equals(context.nodeId()) || now - group.lastContact < timeoutMs);
+            if (preVote) {
+                granted = candidate != null && shard != null && shard.isReplica(candidate) && term > group.term
+                        && !leaderAlive && candidateApplied >= applied;
+            } else if (candidate != null && shard != null && shard.isReplica(candidate) && term >= group.term && !leaderAlive) {
+                if (term > group.term) {
+                    group.term = term;
+                    group.votedFor = null;
+                }
+                if ((group.votedFor == null || group.votedFor.equals(candidate)) && candidateApplied >= applied) {
+                    group.votedFor = candidate;
+                    group.resetDeadline(now);
+                    granted = true;
+                }
+            }
+            current = group.term;
+        }
+        LOG.fine((preVote ? "Pre-vote for " : "Vote for ") + candidate + " shard=" + shardId + " term=" + term
+                + " applied=" + candidateApplied + " local=" + applied + (granted ? " granted" : " rejected"));
+        ObjectNode response = response(requestId);
+        ObjectNode vote = response.putObject(Constants.VALUE);
+        vote.put(Constants.TERM, current);
+        vote.put(Constants.VOTE_GRANTED, granted);
+        vote.put(Constants.SEQ, context.store().maxSeq());
+        return response;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Election tick failed", e);
+        }
+    }
+
+    private void tick() {
+        ClusterState cluster = context.clusterState();
+        long now = System.currentTimeMillis();
+        Map<Integer, Long> led = new TreeMap<>();
+        for (ShardInfo shard : cluster.effectiveShards()) {
+            Group group = group(shard.shardId());
+            if (context.nodeId().equals(shard.leaderNodeId())) {
+                group.touch(now);
+                led.put(shard.shardId(), group.term());
+            } else if (shard.isReplica(context.nodeId()) && group.beginElection(now)) {
+                io.execute(() -> elect(group));
+            }
+        }
+        if (led.isEmpty()) {
+            return;
+        }
+        for (NodeInfo node : cluster.nodesValues()) {
+            if (!node.nodeId().equals(context.nodeId())) {
+                heartbeatAsync(node, led);
+            }
+        }
+    }
+
+    private void heartbeatAsync(NodeInfo node, Map<Integer, Long> terms) {
+        if (!busyPeers.add(node.nodeId())) {
+            return;
+        }
+        io.execute(() -> {
+            try {
+                heartbeat(node, terms);
+            } finally {
+                busyPeers.remove(node.nodeId());
+            }
+        });
+    }
+
+    private void heartbeat(NodeInfo node, Map<Integer, Long> terms) {
+        ObjectNode request = JsonUtil.object();
+        request.put(Constants.TYPE, Constants.HEARTBEAT);
+        request.put(Constants.FROM_NODE_ID, context.nodeId());
+        request.put(Constants.SEQ, context.replicationManager().log().lastSeq());
+        ObjectNode sent = request.putObject(Constants.TERMS);
+        terms.forEach((shardId, term) -> sent.put(String.valueOf(shardId), term));
+        long sentAt = System.currentTimeMillis();
+        try {
+            JsonNode theirs = pool.get(node.host(), node.port(), (int) requestTimeoutMs)
+                    .request(request, (int) requestTimeoutMs).path(Constants.VALUE);
+            terms.forEach((shardId, term) -> {
+                long current = theirs.path(String.valueOf(shardId)).asLong(-1L);
+                if (current > term) {
+                    stepDown(shardId, current);
+                } else if (current == term) {
+                    group(shardId).acks.merge(node.nodeId(), new Ack(term, sentAt),
+                            (previous, next) -> previous.term() == next.term() && previous.sentAtMs() > next.sentAtMs() ? previous : next);
+                }
+            });
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Heartbeat to " + node.nodeId() + " failed", e);
+        }
+    }
+
+    private void elect(Group group) {
+        try {
+            ClusterState cluster = context.clusterState();
+            ShardInfo shard = cluster.shard(group.shardId);
+            if (shard == null || !shard.isReplica(context.nodeId())) {
+                return;
+            }
+            String previous = shard.leaderNodeId();
+            long applied = context.appliedSeq(previous);
+            int majority = shard.replicas().size() / 2 + 1;
+            Ballot poll = collect(cluster, shard, voteRequest(shard, group.term() + 1, applied, true));
+            if (poll.votes() < majority) {
+                group.resetDeadline(System.currentTimeMillis());
+                return;
+            }
+            long term;
+            synchronized (group) {
+                group.term++;
+                group.votedFor = context.nodeId();
+                group.resetDeadline(System.currentTimeMillis());
+                term = group.term;
+            }
+            LOG.info("Shard " + shard.shardId() + " leader " + previous + " timed out, starting election for term " + term
+                    + " with applied seq " + applied);
+            Ballot ballot = collect(cluster, shard, voteRequest(shard, term, applied, false));
+            synchronized (group) {
+                if (ballot.stale() || group.term != term || ballot.votes() < majority) {
+                    LOG.info("Shard " + shard.shardId() + " election for term " + term + " lost with " + ballot.votes()
+                            + " of " + majority + " votes");
+                    return;
+                }
+            }
+            LOG.info("Elected leader of shard " + shard.shardId() + " for term " + term + ", seq floor " + ballot.seqFloor());
+            becomeLeader(Map.of(shard.shardId(), term), ballot.seqFloor());
+        } finally {
+            group.endElection();
+        }
+    }
+
+    private ObjectNode voteRequest(ShardInfo shard, long term, long applied, boolean preVote) {
+        ObjectNode request = JsonUtil.object();
+        request.put(Constants.TYPE, Constants.VOTE_REQUEST);
+        request.put(Constants.FROM_NODE_ID, context.nodeId());
+        request.put(Constants.SHARD_ID, shard.shardId());
+        request.put(Constants.TERM, term);
+        request.put(Constants.APPLIED_SEQ, applied);
+        if (shard.leaderNodeId() != null) {
+            request.put(Constants.LEADER_ID, shard.leaderNodeId());
+        }
+        if (preVote) {
+            request.put(Constants.PRE_VOTE, true);
+        }
+        return request;
+    }
+
+    private Ballot collect(ClusterState cluster, ShardInfo shard, ObjectNode request) {
+        long term = request.path(Constants.TERM).asLong();
+        boolean preVote = request.path(Constants.PRE_VOTE).asBoolean(false);
+        List<CompletableFuture<ObjectNode>> replies = new ArrayList<>();
+        for (String replica : shard.replicas()) {
+            NodeInfo node = cluster.getNode(replica).orElse(null);
+            if (node != null && !replica.equals(context.nodeId())) {
+                replies.add(requestAsync(node, request.deepCopy()));
+            }
+        }
+        int votes = 1;
+        long seqFloor = context.store().maxSeq();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMs);
+        for (CompletableFuture<ObjectNode> reply : replies) {
+            ObjectNode response = await(reply, deadline);
+            if (response == null || !(response.get(Constants.VALUE) instanceof ObjectNode vote)) {
+                continue;
+            }
+            long theirs = vote.path(Constants.TERM).asLong(0L);
+            if (!preVote && theirs > term) {
+                stepDown(shard.shardId(), theirs);
+                return new Ballot(0, seqFloor, true);
+            }
+            if (vote.path(Constants.VOTE_GRANTED).asBoolean(false)) {
+                votes++;
+                seqFloor = Math.max(seqFloor, vote.path(Constants.SEQ).asLong(0L));
+            }
+        }
+        return new Ballot(votes, seqFloor, false);
+    }
+
+    private void becomeLeader(Map<Integer, Long> terms, long seqFloor) {
+        context.updateCluster(current -> {
+            ClusterState next = current;
+            for (int shardId : terms.keySet()) {
+                ShardInfo shard = next.shard(shardId);
+                if (shard != null && !context.nodeId().equals(shard.leaderNodeId())) {
+                    next = next.withShardLeader(shardId, context.nodeId());
+                }
+            }
+            return next;
+        });
+        ClusterState cluster = context.clusterState();
+        List<CompletableFuture<Void>> announced = new ArrayList<>();
+        for (NodeInfo node : cluster.nodesValues()) {
+            if (!node.nodeId().equals(context.nodeId())) {
+                announced.add(CompletableFuture.runAsync(() -> heartbeat(node, terms), io));
+            }
+        }
+        try {
+            CompletableFuture.allOf(announced.toArray(CompletableFuture[]::new)).get(requestTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.log(Level.FINE, "Leadership announcement incomplete", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Set<String> followers = new HashSet<>();
+        for (ShardInfo led : cluster.effectiveShards()) {
+            if (context.nodeId().equals(led.leaderNodeId())) {
+                followers.addAll(led.replicas());
+            }
+        }
+        followers.remove(context.nodeId());
+        context.replicationManager().restartStream(seqFloor, followers);
+    }
+
+    private void stepDown(int shardId, long term) {
+        Group group = group(shardId);
+        synchronized (group) {
+            if (term <= group.term) {
+                return;
+            }
+            group.term = term;
+            group.votedFor = null;
+            group.touch(System.currentTimeMillis());
+        }
+        boolean steppedDown = context.updateCluster(current -> {
+            ShardInfo shard = current.shard(shardId);
+            return shard != null && context.nodeId().equals(shard.leaderNodeId()) ? current.withShardLeader(shardId, null) : current;
+        });
+        if (steppedDown) {
+            LOG.info("Stepping down as leader of shard " + shardId + ", term " + term + " is newer");
+        }
+    }
+
+    private void follow(int shardId, String leader, long term) {
+        boolean changed = context.updateCluster(current -> {
+            ShardInfo shard = current.shard(shardId);
+            return shard != null && !leader.equals(shard.leaderNodeId()) ? current.withShardLeader(shardId, leader) : current;
+        });
+        if (changed) {
+            LOG.info("Shard " + shardId + " leader is now " + leader + " at term " + term);
+        }
+    }
+
+    private CompletableFuture<ObjectNode> requestAsync(NodeInfo node, ObjectNode request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.get(node.host(), node.port(), (int) requestTimeoutMs).request(request, (int) requestTimeoutMs);
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Vote request to " + node.nodeId() + " failed", e);
+                return null;
+            }
+        }, io);
+    }
+
+    private ObjectNode await(CompletableFuture<ObjectNode> reply, long deadlineNanos) {
+        try {
+            return reply.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Group group(int shardId) {
+        return groups.computeIfAbsent(shardId, Group::new);
+    }
+
+    private static ObjectNode response(String requestId) {
+        ObjectNode response = JsonUtil.object();
+        if (requestId != null) {
+            response.put(Constants.REQUEST_ID, requestId);
+        }
+        response.put(Constants.STATUS, Constants.STATUS_OK);
+        return response;
+    }
+
+    private record Ack(long term, long sentAtMs) {
+    }
+
+    private record LeaderMark(long seq, long receivedAtMs) {
+    }
+
+    private record Ballot(int votes, long seqFloor, boolean stale) {
+    }
+
+    private final class Group {
+        private final int shardId;
+        private final ConcurrentHashMap<String, Ack> acks = new ConcurrentHashMap<>();
+        private long term;
+        private String votedFor;
+        private long lastContact;
+        private long deadline;
+        private boolean electing;
+
+        private Group(int shardId) {
+            this.shardId = shardId;
+            touch(System.currentTimeMillis());
+        }
+
+        private synchronized long term() {
+            return term;
+        }
+
+        private void touch(long now) {
+            lastContact = now;
+            resetDeadline(now);
+        }
+
+        private synchronized void resetDeadline(long now) {
+            deadline = now + timeoutMs + ThreadLocalRandom.current().nextLong(timeoutMs + 1);
+        }
+
+        private synchronized boolean beginElection(long now) {
+            if (electing || now < deadline) {
+                return false;
+            }
+            electing = true;
+            return true;
+        }
+
+        private synchronized void endElection() {
+            electing = false;
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package distr.node;
+
+import distr.common.Constants;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+public final class LsmNodeStore implements NodeStore {
+    private static final Logger LOG = Logger.getLogger(LsmNodeStore.class.getName());
+    private static final Comparator<SSTable> NEWEST_FIRST = Comparator.comparingLong(SSTable::maxSeq)
+            .thenComparingLong(SSTable::id).reversed();
+    private final Path dir;
+    private final WriteAheadLog wal;
+    private final long memtableBytes;
+    private final StampedLock lock = new StampedLock();
+    private final AtomicLong nextTableId = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong tombstonesReaped = new AtomicLong();
+    private final AtomicLong tombstoneBytesReclaimed = new AtomicLong();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lsm-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lsm-compact");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile View view;
+    private volatile boolean started;
+    private volatile ToLongFunction<String> safeSeq = key -> Long.MIN_VALUE;
+
+    public LsmNodeStore(Path dir, WriteAheadLog wal) throws IOException {
+        this(dir, wal, Constants.LSM_MEMTABLE_BYTES);
+    }
+
+    public LsmNodeStore(Path dir, WriteAheadLog wal, long memtableBytes) throws IOException {
+        this.dir = dir;
+        this.wal = wal;
+        this.memtableBytes = memtableBytes;
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.toList();
+        }
+        List<SSTable> tables = new ArrayList<>();
+        Set<Long> replaced = new HashSet<>();
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            if (name.endsWith(".tmp")) {
+                Files.deleteIfExists(path);
+            } else if (name.startsWith(Constants.LSM_TABLE_PREFIX) && name.endsWith(Constants.LSM_TABLE_SUFFIX)) {
+                long id = Long.parseLong(name.substring(Constants.LSM_TABLE_PREFIX.length(),
+                        name.length() - Constants.LSM_TABLE_SUFFIX.length()));
+                SSTable table = SSTable.open(path, id);
+                tables.add(table);
+                for (long replacedId : table.replaces()) {
+                    replaced.add(replacedId);
+                }
+                nextTableId.accumulateAndGet(id + 1, Math::max);
+            }
+        }
+        List<SSTable> live = new ArrayList<>();
+        for (SSTable table : tables) {
+            if (replaced.contains(table.id())) {
+                LOG.info("Removing SSTable " + table.id() + " already merged by an interrupted compaction");
+                table.retire();
+            } else {
+                live.add(table);
+            }
+        }
+        live.sort(NEWEST_FIRST);
+        this.view = new View(new Memtable(), List.of(), List.copyOf(live));
+        LOG.info("Opened LSM store in " + dir + " with " + live.size() + " tables, maxSeq=" + maxSeq());
+    }
+
+    public void start() {
+        started = true;
+        maybeFlush(view.active());
+        maybeCompact();
+    }
+
+    @Override
+    public WriteAheadLog wal() {
+        return wal;
+    }
+
+    @Override
+    public void restore(String key, ValueEntry entry) {
+        Memtable active;
+        long stamp = lock.readLock();
+        try {
+            active = view.active();
+            active.put(key, entry);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        maybeFlush(active);
+    }
+
+    @Override
+    public ValueEntry get(String key) {
+        View current = view;
+        ValueEntry newest = current.active().get(key);
+        for (Memtable frozen : current.frozen()) {
+            newest = newer(newest, frozen.get(key));
+        }
+        for (SSTable table : current.tables()) {
+            if (newest != null && newest.seq() >= table.maxSeq()) {
+                break;
+            }
+            if (!table.mightContain(key)) {
+                continue;
+            }
+            if (!table.retain()) {
+                return get(key);
+            }
+            try {
+                newest = newer(newest, table.get(key));
+            } catch (IOException e) {
+                throw new IllegalStateException("SSTable read failed for key " + key, e);
+            } finally {
+                table.release();
+            }
+        }
+        return newest;
+    }
+
+    @Override
+    public long maxSeq() {
+        View current = view;
+        long max = current.active().maxSeq();
+        for (Memtable frozen : current.frozen()) {
+            max = Math.max(max, frozen.maxSeq());
+        }
+        for (SSTable table : current.tables()) {
+            max = Math.max(max, table.maxSeq());
+        }
+        return max;
+    }
+
+    @Override
+    public long size() {
+        View current = view;
+        long size = current.active().size();
+        for (Memtable frozen : current.frozen()) {
+            size += frozen.size();
+        }
+        for (SSTable table : current.tables()) {
+            size += table.entries();
+        }
+        return size;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return 0L;
+    }
+
+    @Override
+    public long tombstones() {
+        View current = view;
+        long tombstones = current.active().tombstones();
+        for (Memtable frozen : current.frozen()) {
+            tombstones += frozen.tombstones();
+        }
+        for (SSTable table : current.tables()) {
+            tombstones += table.tombstones();
+        }
+        return tombstones;
+    }
+
+    @Override
+    public long tombstonesReaped() {
+        return tombstonesReaped.get();
+    }
+
+    @Override
+    public long tombstoneBytesReclaimed() {
+        return tombstoneBytesReclaimed.get();
+    }
+
+    @Override
+    public long reapTombstones(ToLongFunction<String> safeSeq) {
+        this.safeSeq = safeSeq;
+        return 0L;
+    }
+
+    @Override
+    public boolean shouldReap() {
+        return true;
+    }
+
+    @Override
+    public boolean countsEstimated() {
+        return true;
+    }
+
+    public int tables() {
+        return view.tables().size();
+    }
+
+    public long diskBytes() {
+        long bytes = 0L;
+        for (SSTable table : view.tables()) {
+            bytes += table.fileBytes();
+        }
+        return bytes;
+    }
+
+    public long flushes() {
+        return flushes.get();
+    }
+
+    public long compactions() {
+        return compactions.get();
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, ValueEntry>> entries() {
+        return () -> {
+            while (true) {
+                View current = view;
+                List<SSTable> retained = new ArrayList<>();
+                for (SSTable table : current.tables()) {
+                    if (!table.retain()) {
+                        break;
+                    }
+                    retained.add(table);
+                }
+                if (retained.size() < current.tables().size()) {
+                    retained.forEach(SSTable::release);
+                    continue;
+                }
+                List<Iterator<Map.Entry<String, ValueEntry>>> sources = new ArrayList<>();
+                sources.add(current.active().iterator());
+                for (Memtable frozen : current.frozen()) {
+                    sources.add(frozen.iterator());
+                }
+                for (SSTable table : retained) {
+                    sources.add(table.iterator());
+                }
+                return new ReleasingIterator(new MergingIterator(sources), retained);
+            }
+        };
+    }
+
+    @Override
+    public Map<String, String> dump() {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (Map.Entry<String, ValueEntry> entry : entries()) {
+            if (!entry.getValue().tombstone()) {
+                out.put(entry.getKey(), entry.getValue().value());
+            }
+        }
+        return out;
+    }
+
+    private void maybeFlush(Memtable active) {
+        if (started && active.bytes() >= memtableBytes && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void maybeCompact() {
+        if (started && view.tables().size() >= Constants.LSM_COMPACTION_TRIGGER && compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(this::compactQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            while (view.active().bytes() >= memtableBytes) {
+                flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Memtable flush failed in " + dir, e);
+        } finally {
+            flushScheduled.set(false);
+        }
+    }
+
+    private void flush() throws IOException {
+        long cut = 0L;
+        if (wal != null) {
+            wal.rotate().join();
+            cut = wal.segment();
+        }
+        long stamp = lock.writeLock();
+        try {
+            View current = view;
+            List<Memtable> frozen = new ArrayList<>(current.frozen());
+            frozen.add(current.active());
+            view = new View(new Memtable(), List.copyOf(frozen), current.tables());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (Memtable memtable : view.frozen()) {
+            long id = nextTableId.getAndIncrement();
+            SSTable table = SSTable.write(tablePath(id), id, memtable.iterator(), memtable.size(), new long[0]);
+            install(List.of(memtable), List.of(), table);
+            flushes.incrementAndGet();
+            LOG.info("Flushed memtable with " + table.entries() + " entries to SSTable " + id + " (" + table.fileBytes() + " bytes)");
+        }
+        if (wal != null) {
+            wal.deleteSegmentsBefore(cut);
+        }
+        maybeCompact();
+    }
+
+    private void compactQuietly() {
+        try {
+            List<SSTable> inputs;
+            while (!(inputs = pickCompaction(view.tables())).isEmpty()) {
+                compact(inputs, inputs.size() == view.tables().size());
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Compaction failed in " + dir, e);
+        } finally {
+            compactionScheduled.set(false);
+        }
+    }
+
+    private static List<SSTable> pickCompaction(List<SSTable> tables) {
+        if (tables.size() < Constants.LSM_COMPACTION_TRIGGER) {
+            return List.of();
+        }
+        List<SSTable> inputs = new ArrayList<>(tables.subList(0, Constants.LSM_COMPACTION_TRIGGER));
+        long bytes = 0L;
+        for (SSTable table : inputs) {
+            bytes += table.fileBytes();
+        }
+        for (int i = inputs.size(); i < tables.size() && tables.get(i).fileBytes() <= bytes * 2; i++) {
+            inputs.add(tables.get(i));
+            bytes += tables.get(i).fileBytes();
+        }
+        return inputs;
+    }
+
+    private void compact(List<SSTable> inputs, boolean bottom) throws IOException {
+        View current = view;
+        long memtableMinSeq = current.active().minSeq();
+        for (Memtable frozen : current.frozen()) {
+            memtableMinSeq = Math.min(memtableMinSeq, frozen.minSeq());
+        }
+        ToLongFunction<String> reapable = safeSeq;
+        long maxSeq = 0L;
+        long expected = 0L;
+        long[] replaces = new long[inputs.size()];
+        List<Iterator<Map.Entry<String, ValueEntry>>> sources = new ArrayList<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            SSTable input = inputs.get(i);
+            maxSeq = Math.max(maxSeq, input.maxSeq());
+            expected += input.entries();
+            replaces[i] = input.id();
+            sources.add(input.iterator());
+        }
+        long limit = Math.min(maxSeq, memtableMinSeq) - 1;
+        MergingIterator merged = bottom
+                ? new MergingIterator(sources, key -> Math.min(reapable.applyAsLong(key), limit))
+                : new MergingIterator(sources);
+        long id = nextTableId.getAndIncrement();
+        SSTable output = SSTable.write(tablePath(id), id, merged, expected, replaces);
+        install(List.of(), inputs, output);
+        for (SSTable input : inputs) {
+            input.retire();
+        }
+        compactions.incrementAndGet();
+        tombstonesReaped.addAndGet(merged.droppedTombstones());
+        tombstoneBytesReclaimed.addAndGet(merged.droppedBytes());
+        LOG.info("Compacted " + inputs.size() + " SSTables into " + id + " with " + output.entries() + " entries ("
+                + output.fileBytes() + " bytes), dropped " + merged.droppedTombstones() + " tombstones");
+    }
+
+    private void install(List<Memtable> flushed, List<SSTable> replaced, SSTable table) {
+        long stamp = lock.writeLock();
+        try {
+            View current = view;
+            List<Memtable> frozen = new ArrayList<>(current.frozen());
+            frozen.removeAll(flushed);
+            List<SSTable> tables = new ArrayList<>(current.tables());
+            tables.removeAll(replaced);
+            tables.add(table);
+            tables.sort(NEWEST_FIRST);
+            view = new View(current.active(), List.copyOf(frozen), List.copyOf(tables));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private Path tablePath(long id) {
+        return dir.resolve(String.format("%s%016d%s", Constants.LSM_TABLE_PREFIX, id, Constants.LSM_TABLE_SUFFIX));
+    }
+
+    private static ValueEntry newer(ValueEntry current, ValueEntry candidate) {
+        if (current == null) {
+            return candidate;
+        }
+        return candidate != null && candidate.seq() > current.seq() ? candidate : current;
+    }
+
+    private record View(Memtable active, List<Memtable> frozen, List<SSTable> tables) {
+    }
+
+    private static final class Memtable {
+        private static final int ENTRY_OVERHEAD_BYTES = 64;
+        private final ConcurrentSkipListMap<String, ValueEntry> map = new ConcurrentSkipListMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong maxSeq = new AtomicLong();
+        private final AtomicLong minSeq = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong tombstones = new AtomicLong();
+
+        void put(String key, ValueEntry entry) {
+            if (entry.seq() < minSeq.get()) {
+                minSeq.accumulateAndGet(entry.seq(), Math::min);
+            }
+            ValueEntry stored = map.merge(key, entry, (existing, incoming) -> incoming.seq() >= existing.seq() ? incoming : existing);
+            if (stored == entry) {
+                bytes.addAndGet(ENTRY_OVERHEAD_BYTES + 2L * key.length() + (entry.value() == null ? 0 : 2L * entry.value().length()));
+                maxSeq.accumulateAndGet(entry.seq(), Math::max);
+                if (entry.tombstone()) {
+                    tombstones.incrementAndGet();
+                }
+            }
+        }
+
+        ValueEntry get(String key) {
+            return map.get(key);
+        }
+
+        long bytes() {
+            return bytes.get();
+        }
+
+        long maxSeq() {
+            return maxSeq.get();
+        }
+
+        long minSeq() {
+            return minSeq.get();
+        }
+
+        long tombstones() {
+            return tombstones.get();
+        }
+
+        int size() {
+            return map.size();
+        }
+
+        Iterator<Map.Entry<String, ValueEntry>> iterator() {
+            return map.entrySet().iterator();
+        }
+    }
+
+    private static final class ReleasingIterator implements Iterator<Map.Entry<String, ValueEntry>> {
+        private final Iterator<Map.Entry<String, ValueEntry>> delegate;
+        private List<SSTable> retained;
+
+        ReleasingIterator(Iterator<Map.Entry<String, ValueEntry>> delegate, List<SSTable> retained) {
+            this.delegate = delegate;
+            this.retained = retained;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (delegate.hasNext()) {
+                return true;
+            }
+            if (retained != null) {
+                retained.forEach(SSTable::release);
+                retained = null;
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<String, ValueEntry> next() {
+            return delegate.next();
+        }
+    }
+}
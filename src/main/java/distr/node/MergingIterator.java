@@ -0,0 +1,88 @@
+package distr.node;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+public final class MergingIterator implements Iterator<Map.Entry<String, ValueEntry>> {
+    private final PriorityQueue<Head> heads = new PriorityQueue<>();
+    private final ToLongFunction<String> tombstoneHorizon;
+    private Map.Entry<String, ValueEntry> next;
+    private long droppedTombstones;
+    private long droppedBytes;
+
+    public MergingIterator(List<Iterator<Map.Entry<String, ValueEntry>>> sources) {
+        this(sources, key -> Long.MIN_VALUE);
+    }
+
+    public MergingIterator(List<Iterator<Map.Entry<String, ValueEntry>>> sources, ToLongFunction<String> tombstoneHorizon) {
+        this.tombstoneHorizon = tombstoneHorizon;
+        for (Iterator<Map.Entry<String, ValueEntry>> source : sources) {
+            advance(source);
+        }
+    }
+
+    public long droppedTombstones() {
+        return droppedTombstones;
+    }
+
+    public long droppedBytes() {
+        return droppedBytes;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !heads.isEmpty()) {
+            Map.Entry<String, ValueEntry> newest = pollNewest();
+            ValueEntry value = newest.getValue();
+            if (value.tombstone() && value.seq() <= tombstoneHorizon.applyAsLong(newest.getKey())) {
+                droppedTombstones++;
+                droppedBytes += SSTable.recordBytes(newest.getKey(), value);
+            } else {
+                next = newest;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, ValueEntry> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, ValueEntry> entry = next;
+        next = null;
+        return entry;
+    }
+
+    private Map.Entry<String, ValueEntry> pollNewest() {
+        Head head = heads.poll();
+        Map.Entry<String, ValueEntry> newest = head.entry();
+        advance(head.source());
+        while (!heads.isEmpty() && heads.peek().entry().getKey().equals(newest.getKey())) {
+            Head duplicate = heads.poll();
+            if (duplicate.entry().getValue().seq() > newest.getValue().seq()) {
+                newest = duplicate.entry();
+            }
+            advance(duplicate.source());
+        }
+        return newest;
+    }
+
+    private void advance(Iterator<Map.Entry<String, ValueEntry>> source) {
+        if (source.hasNext()) {
+            heads.add(new Head(source.next(), source));
+        }
+    }
+
+    private record Head(Map.Entry<String, ValueEntry> entry, Iterator<Map.Entry<String, ValueEntry>> source)
+            implements Comparable<Head> {
+        @Override
+        public int compareTo(Head other) {
+            return entry.getKey().compareTo(other.entry.getKey());
+        }
+    }
+}
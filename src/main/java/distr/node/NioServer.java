@@ -0,0 +1,341 @@
+package distr.node;
+
+import distr.common.BinaryCodec;
+import distr.common.Constants;
+import distr.common.JsonCodec;
+import distr.common.MalformedMessageException;
+import distr.common.Message;
+import distr.common.ReplBatch;
+import distr.common.WireFormat;
+import distr.common.WireStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class NioServer {
+    private static final Logger LOG = Logger.getLogger(NioServer.class.getName());
+    private final NodeServer server;
+    private final int port;
+    private final int maxConnections;
+    private final ExecutorService workers;
+    private final ConcurrentLinkedQueue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private volatile Selector selector;
+
+    public NioServer(NodeServer server, int port, int maxConnections, ExecutorService workers) {
+        this.server = server;
+        this.port = port;
+        this.maxConnections = maxConnections;
+        this.workers = workers;
+    }
+
+    public int openConnections() {
+        return openConnections.get();
+    }
+
+    public void run() throws IOException {
+        try (Selector sel = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+            selector = sel;
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(sel, SelectionKey.OP_ACCEPT);
+            while (true) {
+                sel.select();
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.flushQuietly();
+                }
+                Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(server);
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException e) {
+                        LOG.log(Level.FINE, "Connection error", e);
+                        connection.close();
+                    } catch (RuntimeException e) {
+                        LOG.log(Level.WARNING, "Closing connection after unexpected failure", e);
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        if (openConnections.get() >= maxConnections) {
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        openConnections.incrementAndGet();
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ConcurrentLinkedQueue<byte[]> inbound = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final ByteBuffer out = ByteBuffer.allocateDirect(Constants.NIO_BUFFER_BYTES);
+        private ByteBuffer in = ByteBuffer.allocateDirect(Constants.NIO_BUFFER_BYTES);
+        private SelectionKey key;
+        private WireFormat format;
+        private byte[] current;
+        private int currentOffset;
+        private volatile boolean closed;
+        private CompletableFuture<Void> replicationTail = CompletableFuture.completedFuture(null);
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            out.flip();
+        }
+
+        private void read() throws IOException {
+            int read = channel.read(in);
+            if (read < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            if (!in.hasRemaining()) {
+                in.compact();
+                return;
+            }
+            if (format == null && !detectFormat()) {
+                in.compact();
+                return;
+            }
+            if (format == WireFormat.BINARY) {
+                readFrames();
+            } else {
+                readLines();
+            }
+            in.compact();
+            if (!in.hasRemaining()) {
+                grow(in.capacity() * 2);
+            }
+        }
+
+        private boolean detectFormat() throws IOException {
+            if (in.get(in.position()) != Constants.BINARY_MAGIC) {
+                format = WireFormat.JSON;
+                return true;
+            }
+            if (in.remaining() < 2) {
+                return false;
+            }
+            in.get();
+            int version = in.get();
+            byte agreed = (byte) Math.min(version, Constants.BINARY_PROTOCOL_VERSION);
+            outbound.add(new byte[]{Constants.BINARY_MAGIC, agreed});
+            flush();
+            if (agreed < 1) {
+                throw new IOException("Unsupported binary protocol version " + version);
+            }
+            format = WireFormat.BINARY;
+            return true;
+        }
+
+        private void readLines() {
+            int start = in.position();
+            for (int i = start; i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    byte[] line = new byte[i - start];
+                    in.get(start, line);
+                    start = i + 1;
+                    if (line.length > 0) {
+                        dispatch(line);
+                    }
+                }
+            }
+            in.position(start);
+        }
+
+        private void readFrames() throws IOException {
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 0 || length > Constants.MAX_FRAME_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (in.remaining() < length + 4) {
+                    if (in.capacity() < length + 4) {
+                        in.compact();
+                        grow(length + 4);
+                        in.flip();
+                    }
+                    return;
+                }
+                in.getInt();
+                byte[] payload = new byte[length];
+                in.get(payload);
+                dispatch(payload);
+            }
+        }
+
+        private void grow(int capacity) throws IOException {
+            if (in.capacity() >= Constants.MAX_FRAME_BYTES + 4) {
+                throw new IOException("Frame too large");
+            }
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.min(Math.max(capacity, in.capacity() * 2), Constants.MAX_FRAME_BYTES + 4));
+            in.flip();
+            larger.put(in);
+            in = larger;
+        }
+
+        private void dispatch(byte[] bytes) {
+            inbound.add(bytes);
+            if (draining.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                byte[] bytes;
+                while ((bytes = inbound.poll()) != null) {
+                    process(bytes);
+                }
+                draining.set(false);
+                if (inbound.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void process(byte[] bytes) {
+            Message request;
+            try {
+                request = format == WireFormat.BINARY ? BinaryCodec.decode(bytes) : JsonCodec.decode(bytes, 0, bytes.length);
+            } catch (MalformedMessageException e) {
+                enqueue(server.malformedRequest());
+                return;
+            }
+            if (request == null) {
+                return;
+            }
+            if (request instanceof ReplBatch) {
+                CompletableFuture<Message> response = server.handleRequest(request)
+                        .exceptionally(error -> server.failedRequest(request, error));
+                replicationTail = replicationTail.thenCombine(response, (ignored, message) -> {
+                    enqueue(message);
+                    return null;
+                });
+                return;
+            }
+            workers.execute(() -> server.handleRequest(request).whenComplete((response, error) ->
+                    enqueue(error == null ? response : server.failedRequest(request, error))));
+        }
+
+        private void enqueue(Message response) {
+            if (response == null || closed) {
+                return;
+            }
+            try {
+                outbound.add(WireStream.frame(response, format));
+            } catch (JsonProcessingException e) {
+                LOG.log(Level.WARNING, "Failed to encode response", e);
+                return;
+            }
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        private void flushQuietly() {
+            try {
+                flush();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Connection error", e);
+                close();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (closed) {
+                return;
+            }
+            while (true) {
+                if (out.hasRemaining()) {
+                    channel.write(out);
+                    if (out.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                if (!fill()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+
+        private boolean fill() {
+            out.clear();
+            while (out.hasRemaining()) {
+                if (current == null) {
+                    current = outbound.poll();
+                    currentOffset = 0;
+                    if (current == null) {
+                        break;
+                    }
+                }
+                int length = Math.min(out.remaining(), current.length - currentOffset);
+                out.put(current, currentOffset, length);
+                currentOffset += length;
+                if (currentOffset == current.length) {
+                    current = null;
+                }
+            }
+            out.flip();
+            return out.hasRemaining();
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            openConnections.decrementAndGet();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
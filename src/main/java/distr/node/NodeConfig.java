@@ -0,0 +1,18 @@
+package distr.node;
+
+import distr.common.Constants;
+import distr.common.WireFormat;
+
+import java.nio.file.Path;
+
+public record NodeConfig(ExecutionMode executionMode, int maxConnections, Transport transport, WireFormat peerWireFormat,
+                         Path dataDir, FsyncPolicy fsyncPolicy, long snapshotIntervalMs,
+                         long writeBatchWindowUs, int writeBatchMaxOps, long electionTimeoutMs,
+                         boolean leaseReads, long gossipIntervalMs, StorageEngine storageEngine,
+                         long tombstoneReapIntervalMs) {
+    public static NodeConfig defaults() {
+        return new NodeConfig(ExecutionMode.CACHED, 10_000, Transport.BLOCKING, WireFormat.BINARY, null, FsyncPolicy.GROUP,
+                Constants.DEFAULT_SNAPSHOT_INTERVAL_MS, 0L, Constants.DEFAULT_WRITE_BATCH_MAX_OPS, Constants.DEFAULT_ELECTION_TIMEOUT_MS, true,
+                Constants.DEFAULT_GOSSIP_INTERVAL_MS, StorageEngine.HEAP, Constants.DEFAULT_TOMBSTONE_REAP_INTERVAL_MS);
+    }
+}
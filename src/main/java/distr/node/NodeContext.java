@@ -1,26 +1,107 @@
 package distr.node;
 
 import distr.common.ClusterState;
+import distr.common.Constants;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 
 public final class NodeContext {
     private final String nodeId;
     private final String host;
     private final int port;
-    private final ClusterState clusterState;
+    private final long epoch;
+    private final NodeConfig config;
+    private volatile ClusterState clusterState = new ClusterState();
     private final NodeStore store;
     private final AtomicLong seq;
+    private final PeerChannels peers;
     private final ReplicationManager replicationManager;
+    private final SnapshotManager snapshots;
+    private final LeaderElector elector;
+    private final ConfigGossip gossip;
+    private final TombstoneReaper reaper;
+    private final ConcurrentHashMap<String, SeqWatermark> watermarks = new ConcurrentHashMap<>();
 
-    public NodeContext(String nodeId, String host, int port) {
+    public NodeContext(String nodeId, String host, int port) throws IOException {
+        this(nodeId, host, port, NodeConfig.defaults());
+    }
+
+    public NodeContext(String nodeId, String host, int port, NodeConfig config) throws IOException {
         this.nodeId = nodeId;
         this.host = host;
         this.port = port;
-        this.clusterState = new ClusterState();
-        this.store = new NodeStore();
-        this.seq = new AtomicLong(0L);
-        this.replicationManager = new ReplicationManager(this);
+        this.epoch = nextEpoch(config.dataDir());
+        this.config = config;
+        if (config.dataDir() == null) {
+            if (config.storageEngine() == StorageEngine.LSM) {
+                throw new IllegalArgumentException("LSM storage requires a data directory");
+            }
+            this.store = openStore(config.storageEngine(), null, null);
+            this.seq = new AtomicLong(0L);
+            this.snapshots = null;
+        } else {
+            WriteAheadLog wal = new WriteAheadLog(config.dataDir(), config.fsyncPolicy());
+            this.store = openStore(config.storageEngine(), config.dataDir(), wal);
+            if (store instanceof LsmNodeStore lsm) {
+                this.snapshots = null;
+                this.seq = new AtomicLong(Math.max(lsm.maxSeq(), wal.replay(lsm)));
+                lsm.start();
+            } else {
+                this.snapshots = new SnapshotManager(config.dataDir(), store, wal);
+                long snapshotSeq = snapshots.load();
+                this.seq = new AtomicLong(Math.max(snapshotSeq, wal.replay(store)));
+                snapshots.start(config.snapshotIntervalMs());
+            }
+        }
+        this.replicationManager = new ReplicationManager(this, seq.get());
+        this.peers = new PeerChannels(this);
+        this.elector = new LeaderElector(this, config.electionTimeoutMs());
+        this.gossip = new ConfigGossip(this, config.gossipIntervalMs());
+        this.reaper = new TombstoneReaper(this, config.tombstoneReapIntervalMs());
+        elector.start();
+        gossip.start();
+        reaper.start();
+    }
+
+    private static long nextEpoch(Path dataDir) throws IOException {
+        long now = System.currentTimeMillis();
+        if (dataDir == null) {
+            return now;
+        }
+        Files.createDirectories(dataDir);
+        Path path = dataDir.resolve(Constants.EPOCH_FILE);
+        long epoch = now;
+        if (Files.exists(path)) {
+            try {
+                epoch = Math.max(now, Long.parseLong(Files.readString(path, StandardCharsets.UTF_8).trim()) + 1);
+            } catch (NumberFormatException e) {
+                throw new IOException("Corrupt epoch file " + path, e);
+            }
+        }
+        Path tmp = dataDir.resolve(Constants.EPOCH_FILE + ".tmp");
+        Files.writeString(tmp, Long.toString(epoch), StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return epoch;
+    }
+
+    private static NodeStore openStore(StorageEngine engine, Path dataDir, WriteAheadLog wal) throws IOException {
+        return switch (engine) {
+            case HEAP -> new HeapNodeStore(wal);
+            case OFFHEAP -> new OffHeapNodeStore(wal);
+            case LSM -> new LsmNodeStore(dataDir.resolve(Constants.LSM_DIR), wal);
+        };
     }
 
     public String nodeId() {
@@ -35,10 +116,28 @@ public final class NodeContext {
         return port;
     }
 
+    public long epoch() {
+        return epoch;
+    }
+
+    public NodeConfig config() {
+        return config;
+    }
+
     public ClusterState clusterState() {
         return clusterState;
     }
 
+    public synchronized boolean updateCluster(UnaryOperator<ClusterState> change) {
+        ClusterState current = clusterState;
+        ClusterState next = change.apply(current);
+        if (next == current) {
+            return false;
+        }
+        clusterState = next.withVersion(current.version() + 1);
+        return true;
+    }
+
     public NodeStore store() {
         return store;
     }
@@ -47,8 +146,46 @@ public final class NodeContext {
         return seq.incrementAndGet();
     }
 
+    long advanceSeq(long floor) {
+        return seq.accumulateAndGet(floor, Math::max);
+    }
+
+    ConcurrentHashMap<String, SeqWatermark> watermarks() {
+        return watermarks;
+    }
+
+    public long appliedSeq(String originNodeId) {
+        SeqWatermark watermark = originNodeId == null ? null : watermarks.get(originNodeId);
+        return watermark == null ? 0L : watermark.contiguous();
+    }
+
+    public long safeSeq(String originNodeId) {
+        SeqWatermark watermark = originNodeId == null ? null : watermarks.get(originNodeId);
+        return watermark == null ? 0L : watermark.safeSeq();
+    }
+
+    public SnapshotManager snapshots() {
+        return snapshots;
+    }
+
+    public PeerChannels peers() {
+        return peers;
+    }
+
     public ReplicationManager replicationManager() {
         return replicationManager;
     }
+
+    public LeaderElector elector() {
+        return elector;
+    }
+
+    public ConfigGossip gossip() {
+        return gossip;
+    }
+
+    public TombstoneReaper reaper() {
+        return reaper;
+    }
 }
 
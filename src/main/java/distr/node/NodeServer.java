@@ -1,196 +1,588 @@
 package distr.node;
 
+import distr.common.ClientRequest;
+import distr.common.ClientResponse;
 import distr.common.ClusterState;
+import distr.common.ConnectionPool;
 import distr.common.Constants;
+import distr.common.JsonMessage;
 import distr.common.JsonUtil;
-import distr.common.NetworkClient;
+import distr.common.MalformedMessageException;
 import distr.common.NodeInfo;
+import distr.common.Message;
+import distr.common.ReplAck;
+import distr.common.ReplBatch;
+import distr.common.ReadToken;
+import distr.common.ReplOp;
+import distr.common.ShardInfo;
+import distr.common.WireStream;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class NodeServer {
     private static final Logger LOG = Logger.getLogger(NodeServer.class.getName());
     private final NodeContext context;
-    private final DedupStore dedupStore = new DedupStore();
-    private final ExecutorService executor = Executors.newCachedThreadPool();
-    private final ExecutorService cleanupExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService executor;
+    private final Semaphore connectionPermits;
+    private final NioServer nioServer;
+    private final ExecutorService forwardExecutor = Executors.newCachedThreadPool();
+    private final ConnectionPool forwardPool;
+    private final AtomicLong readsLocal = new AtomicLong();
+    private final AtomicLong readsForwarded = new AtomicLong();
+    private final AtomicLong leaseReads = new AtomicLong();
+    private final AtomicLong quorumReads = new AtomicLong();
 
     public NodeServer(NodeContext context) {
         this.context = context;
-        cleanupExecutor.execute(this::cleanupLoop);
+        NodeConfig config = context.config();
+        this.executor = config.executionMode().newExecutor();
+        this.connectionPermits = new Semaphore(config.maxConnections());
+        this.nioServer = config.transport() == Transport.NIO
+                ? new NioServer(this, context.port(), config.maxConnections(), executor)
+                : null;
+        this.forwardPool = new ConnectionPool(1, config.peerWireFormat());
     }
 
     public void start() throws IOException {
+        NodeConfig config = context.config();
+        LOG.info("Listening on " + context.host() + ":" + context.port()
+                + " transport=" + config.transport().toWire() + " executor=" + config.executionMode().toWire());
+        if (nioServer != null) {
+            nioServer.run();
+            return;
+        }
         try (ServerSocket serverSocket = new ServerSocket(context.port())) {
-            LOG.info("Listening on " + context.host() + ":" + context.port());
             while (true) {
-                Socket socket = serverSocket.accept();
-                executor.execute(() -> handleConnection(socket));
+                connectionPermits.acquireUninterruptibly();
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    connectionPermits.release();
+                    throw e;
+                }
+                executor.execute(() -> {
+                    try {
+                        handleConnection(socket);
+                    } finally {
+                        connectionPermits.release();
+                    }
+                });
             }
         }
     }
 
-    private void cleanupLoop() {
-        while (true) {
-            try {
-                TimeUnit.MINUTES.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return;
+    private void handleConnection(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            WireStream stream = WireStream.accept(socket);
+            while (true) {
+                Message request = null;
+                CompletableFuture<Message> future;
+                try {
+                    request = stream.read();
+                    if (request == null) {
+                        break;
+                    }
+                    future = handleRequest(request);
+                } catch (MalformedMessageException e) {
+                    future = CompletableFuture.completedFuture(malformedRequest());
+                }
+                if (future.isDone() && !future.isCompletedExceptionally()) {
+                    respond(stream, future.join());
+                } else {
+                    Message received = request;
+                    future.whenCompleteAsync((response, error) ->
+                            respond(stream, error == null ? response : failedRequest(received, error)), executor);
+                }
             }
-            dedupStore.cleanup();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Connection error", e);
         }
     }
 
-    private void handleConnection(Socket socket) {
-        try (socket;
-             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
-            String line = reader.readLine();
-            if (line == null) {
-                return;
-            }
-            ObjectNode request;
-            try {
-                request = JsonUtil.parseObject(line);
-            } catch (JsonProcessingException e) {
-                ObjectNode response = errorResponse(null, Constants.ERROR_BAD_REQUEST, "Invalid JSON");
-                sendResponse(writer, response);
-                LOG.warning("Invalid JSON from " + socket.getRemoteSocketAddress());
-                return;
-            }
-            ObjectNode response = handleRequest(request);
-            if (response != null) {
-                sendResponse(writer, response);
-            }
+    private void respond(WireStream stream, Message response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            stream.write(response);
         } catch (IOException e) {
             LOG.log(Level.FINE, "Connection error", e);
-            return;
+            stream.close();
         }
     }
 
-    private void sendResponse(BufferedWriter writer, ObjectNode response) throws IOException {
-        writer.write(JsonUtil.toJson(response));
-        writer.write("\n");
-        writer.flush();
+    Message failedRequest(Message request, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String what = request instanceof ReplBatch batch ? "Replication batch from " + batch.originNodeId() : "Request " + request.requestId();
+        LOG.log(Level.WARNING, what + " failed", cause);
+        if (request instanceof ReplBatch) {
+            return null;
+        }
+        return ClientResponse.error(request.requestId(), Constants.ERROR_INTERNAL, String.valueOf(cause.getMessage()));
     }
 
-    private ObjectNode handleRequest(ObjectNode request) {
-        String type = request.path(Constants.TYPE).asText(null);
-        String requestId = request.path(Constants.REQUEST_ID).asText(null);
+    Message malformedRequest() {
+        LOG.warning("Invalid request");
+        return ClientResponse.error(null, Constants.ERROR_BAD_REQUEST, "Invalid JSON");
+    }
+
+    public CompletableFuture<Message> handleRequest(Message request) {
+        return switch (request) {
+            case ClientRequest client -> handleClientRequest(client);
+            case ReplBatch batch -> handleReplicationBatch(batch);
+            case JsonMessage json -> handleJsonRequest(json);
+            case ReplAck ack -> CompletableFuture.completedFuture(ClientResponse.error(null, Constants.ERROR_BAD_REQUEST, "Unknown type"));
+            case ClientResponse response -> CompletableFuture.completedFuture(
+                    ClientResponse.error(response.requestId(), Constants.ERROR_BAD_REQUEST, "Missing type"));
+        };
+    }
+
+    private CompletableFuture<Message> handleClientRequest(ClientRequest request) {
+        return switch (request.type()) {
+            case Constants.CLIENT_PUT -> handleClientPut(request);
+            case Constants.CLIENT_DELETE -> handleClientDelete(request);
+            default -> handleClientGet(request);
+        };
+    }
+
+    private CompletableFuture<Message> handleJsonRequest(JsonMessage request) {
+        String type = request.type();
+        if (Constants.CLIENT_MPUT.equals(type) || Constants.CLIENT_MDELETE.equals(type)) {
+            return handleClientMultiWrite(type, request.node(), request.requestId());
+        }
+        if (Constants.CLIENT_MGET.equals(type)) {
+            return handleClientMultiGet(request.node(), request.requestId());
+        }
+        return CompletableFuture.completedFuture(handleSync(type, request.node(), request.requestId()));
+    }
+
+    private Message handleSync(String type, ObjectNode request, String requestId) {
         if (type == null) {
-            return errorResponse(requestId, Constants.ERROR_BAD_REQUEST, "Missing type");
+            return ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, "Missing type");
         }
         return switch (type) {
-            case Constants.CLIENT_PUT -> handleClientPut(request, requestId);
-            case Constants.CLIENT_GET -> handleClientGet(request, requestId);
-            case Constants.CLIENT_DUMP -> handleClientDump(request, requestId);
-            case Constants.CLIENT_DELETE -> handleClientDelete(request, requestId);
+            case Constants.CLIENT_DUMP -> new JsonMessage(handleClientDump(request, requestId));
+            case Constants.CLIENT_STATS -> new JsonMessage(handleClientStats(requestId));
             case Constants.CLUSTER_UPDATE -> handleClusterUpdate(request, requestId);
-            case Constants.REPL_PUT -> handleReplicationPut(request);
-            case Constants.REPL_DELETE -> handleReplicationDelete(request);
-            case Constants.REPL_ACK -> handleReplicationAck(request);
-            default -> errorResponse(requestId, Constants.ERROR_BAD_REQUEST, "Unknown type");
+            case Constants.HEARTBEAT -> new JsonMessage(context.elector().onHeartbeat(request, requestId));
+            case Constants.CONFIG_GOSSIP -> new JsonMessage(context.gossip().onGossip(request, requestId));
+            case Constants.VOTE_REQUEST -> new JsonMessage(context.elector().onVoteRequest(request, requestId));
+            default -> ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, "Unknown type");
         };
     }
 
-    private ObjectNode handleClusterUpdate(ObjectNode request, String requestId) {
+    private Message handleClusterUpdate(ObjectNode request, String requestId) {
         ClusterState incoming = ClusterState.fromJson(request);
-        context.clusterState().applyFrom(incoming);
-        LOG.info("Cluster update: leader=" + incoming.getLeaderNodeId() + " rf=" + incoming.getRf() + " mode=" + incoming.getReplicationMode());
-        return okResponse(requestId);
+        boolean force = request.path(Constants.FORCE_LEADER).asBoolean(false);
+        if (!context.gossip().apply(incoming, force, request.path(Constants.TERM).asLong(0L))) {
+            long current = context.clusterState().configEpoch();
+            if (current > incoming.configEpoch()) {
+                LOG.info("Reject cluster update with config epoch " + incoming.configEpoch() + ", current is " + current);
+                return ClientResponse.error(requestId, Constants.ERROR_STALE_CONFIG,
+                        "Config epoch " + incoming.configEpoch() + " is older than " + current);
+            }
+        }
+        LOG.info("Cluster update: epoch=" + incoming.configEpoch() + " leader=" + incoming.getLeaderNodeId() + " rf=" + incoming.getRf() + " mode=" + incoming.getReplicationMode()
+                + " shards=" + incoming.getShards().size());
+        return ClientResponse.ok(requestId);
     }
 
-    private ObjectNode handleClientPut(ObjectNode request, String requestId) {
-        String key = request.path(Constants.KEY).asText(null);
-        String value = request.path(Constants.VALUE).asText(null);
+    private CompletableFuture<Message> handleClientPut(ClientRequest request) {
+        String requestId = request.requestId();
+        String key = request.key();
+        String value = request.value();
         if (!isValidKey(key) || value == null) {
-            return errorResponse(requestId, Constants.ERROR_BAD_REQUEST, "Invalid key or value");
+            return CompletableFuture.completedFuture(ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, "Invalid key or value"));
+        }
+        ShardInfo shard = context.clusterState().shardFor(key);
+        if (!Objects.equals(shard.leaderNodeId(), context.nodeId())) {
+            LOG.info("Reject PUT key=" + key + " not leader of shard " + shard.shardId());
+            return CompletableFuture.completedFuture(notLeader(requestId, shard));
+        }
+        return context.replicationManager().handleClientPut(key, value).thenApply(result -> {
+            if (result.isOk()) {
+                LOG.info("PUT key=" + key + " ok");
+                return ClientResponse.ok(requestId).withReadToken(readToken(result.seq()));
+            }
+            LOG.info("PUT key=" + key + " error=" + result.errorCode());
+            return replicationError(requestId, result, context.clusterState().shardFor(key));
+        });
+    }
+
+    private CompletableFuture<Message> handleClientDelete(ClientRequest request) {
+        String requestId = request.requestId();
+        String key = request.key();
+        if (!isValidKey(key)) {
+            return CompletableFuture.completedFuture(ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, "Invalid key"));
+        }
+        ShardInfo shard = context.clusterState().shardFor(key);
+        if (!Objects.equals(shard.leaderNodeId(), context.nodeId())) {
+            LOG.info("Reject DELETE key=" + key + " not leader of shard " + shard.shardId());
+            return CompletableFuture.completedFuture(notLeader(requestId, shard));
+        }
+        return context.replicationManager().handleClientDelete(key).thenApply(result -> {
+            if (result.isOk()) {
+                LOG.info("DELETE key=" + key + " ok");
+                return ClientResponse.ok(requestId).withReadToken(readToken(result.seq()));
+            }
+            LOG.info("DELETE key=" + key + " error=" + result.errorCode());
+            return replicationError(requestId, result, context.clusterState().shardFor(key));
+        });
+    }
+
+    private CompletableFuture<Message> handleClientMultiWrite(String type, ObjectNode request, String requestId) {
+        boolean isPut = Constants.CLIENT_MPUT.equals(type);
+        JsonNode items = request.path(isPut ? Constants.ENTRIES : Constants.KEYS);
+        if ((isPut ? !items.isObject() : !items.isArray()) || items.isEmpty() || items.size() > Constants.MAX_BATCH_KEYS) {
+            return CompletableFuture.completedFuture(ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, "Invalid batch"));
         }
         ClusterState cluster = context.clusterState();
-        if (!Objects.equals(cluster.getLeaderNodeId(), context.nodeId())) {
-            ObjectNode response = errorResponse(requestId, Constants.ERROR_NOT_LEADER, "Not a leader");
-            if (cluster.getLeaderNodeId() != null) {
-                response.put(Constants.LEADER_ID, cluster.getLeaderNodeId());
+        ObjectNode response = okResponse(requestId);
+        ObjectNode results = response.putObject(Constants.VALUE);
+        List<PendingWrite> writes = new ArrayList<>(items.size());
+        if (isPut) {
+            Iterator<Map.Entry<String, JsonNode>> fields = items.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> entry = fields.next();
+                if (!isValidKey(entry.getKey()) || !entry.getValue().isTextual()) {
+                    results.put(entry.getKey(), Constants.ERROR_BAD_REQUEST);
+                } else if (!leads(cluster, entry.getKey())) {
+                    rejectNotLeader(response, results, entry.getKey(), cluster);
+                } else {
+                    writes.add(new PendingWrite(Constants.PUT, entry.getKey(), entry.getValue().asText(), new CompletableFuture<>()));
+                }
+            }
+        } else {
+            for (JsonNode item : items) {
+                if (!item.isTextual() || !isValidKey(item.asText())) {
+                    results.put(item.asText(), Constants.ERROR_BAD_REQUEST);
+                } else if (!leads(cluster, item.asText())) {
+                    rejectNotLeader(response, results, item.asText(), cluster);
+                } else {
+                    writes.add(new PendingWrite(Constants.DELETE, item.asText(), null, new CompletableFuture<>()));
+                }
             }
-            LOG.info("Reject PUT key=" + key + " not leader");
-            return response;
         }
-        ReplicationResult result = context.replicationManager().handleClientPut(key, value);
-        if (result.isOk()) {
-            LOG.info("PUT key=" + key + " ok");
-            return okResponse(requestId);
+        if (writes.isEmpty()) {
+            return CompletableFuture.completedFuture(multiWriteResponse(response, results, null));
+        }
+        return context.replicationManager().handleClientBatch(writes).thenApply(result -> {
+            long seq = 0L;
+            for (PendingWrite write : writes) {
+                ReplicationResult written = write.result().join();
+                results.put(write.key(), written.isOk() ? Constants.STATUS_OK : written.errorCode());
+                seq = Math.max(seq, written.seq());
+                if (Constants.ERROR_NOT_LEADER.equals(written.errorCode()) && !response.has(Constants.LEADER_ID)) {
+                    putLeader(response, cluster.shardFor(write.key()));
+                }
+            }
+            if (seq > 0) {
+                response.put(Constants.READ_TOKEN, readToken(seq));
+            }
+            LOG.info(type + " keys=" + writes.size() + (result.isOk() ? " ok" : " error=" + result.errorCode()));
+            return multiWriteResponse(response, results, result);
+        });
+    }
+
+    private boolean leads(ClusterState cluster, String key) {
+        return Objects.equals(cluster.shardFor(key).leaderNodeId(), context.nodeId());
+    }
+
+    private boolean holds(ClusterState cluster, String key) {
+        return cluster.getShards().isEmpty() || cluster.shardFor(key).isReplica(context.nodeId());
+    }
+
+    private void rejectNotLeader(ObjectNode response, ObjectNode results, String key, ClusterState cluster) {
+        results.put(key, Constants.ERROR_NOT_LEADER);
+        if (!response.has(Constants.LEADER_ID)) {
+            putLeader(response, cluster.shardFor(key));
         }
-        ObjectNode response = errorResponse(requestId, result.errorCode(), result.errorCode());
-        if (Constants.ERROR_NOT_LEADER.equals(result.errorCode()) && cluster.getLeaderNodeId() != null) {
-            response.put(Constants.LEADER_ID, cluster.getLeaderNodeId());
+    }
+
+    private void putLeader(ObjectNode response, ShardInfo shard) {
+        if (shard.leaderNodeId() != null) {
+            response.put(Constants.LEADER_ID, shard.leaderNodeId());
         }
-        LOG.info("PUT key=" + key + " error=" + result.errorCode());
-        return response;
     }
 
-    private ObjectNode handleClientDelete(ObjectNode request, String requestId) {
-        String key = request.path(Constants.KEY).asText(null);
-        if (!isValidKey(key)) {
-            return errorResponse(requestId, Constants.ERROR_BAD_REQUEST, "Invalid key");
+    private Message multiWriteResponse(ObjectNode response, ObjectNode results, ReplicationResult result) {
+        String errorCode = result != null && !result.isOk() ? result.errorCode() : null;
+        if (errorCode == null && results.size() > 0) {
+            Iterator<JsonNode> values = results.elements();
+            while (errorCode == null && values.hasNext()) {
+                String code = values.next().asText();
+                errorCode = Constants.STATUS_OK.equals(code) ? null : code;
+            }
+        }
+        if (errorCode != null) {
+            response.put(Constants.STATUS, Constants.STATUS_ERROR);
+            response.put(Constants.ERROR_CODE, errorCode);
+            response.put(Constants.ERROR_MESSAGE, errorCode);
+            if (result != null && result.retryAfterMs() > 0) {
+                response.put(Constants.RETRY_AFTER_MS, result.retryAfterMs());
+            }
+        }
+        return new JsonMessage(response);
+    }
+
+    private CompletableFuture<Message> handleClientMultiGet(ObjectNode request, String requestId) {
+        JsonNode keys = request.path(Constants.KEYS);
+        if (!keys.isArray() || keys.isEmpty() || keys.size() > Constants.MAX_BATCH_KEYS) {
+            return CompletableFuture.completedFuture(ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, "Invalid batch"));
         }
         ClusterState cluster = context.clusterState();
-        if (!Objects.equals(cluster.getLeaderNodeId(), context.nodeId())) {
-            ObjectNode response = errorResponse(requestId, Constants.ERROR_NOT_LEADER, "Not a leader");
-            if (cluster.getLeaderNodeId() != null) {
-                response.put(Constants.LEADER_ID, cluster.getLeaderNodeId());
+        for (JsonNode key : keys) {
+            if (!key.isTextual() || !isValidKey(key.asText())) {
+                return CompletableFuture.completedFuture(ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, "Invalid key " + key));
+            }
+            if (!holds(cluster, key.asText())) {
+                return CompletableFuture.completedFuture(wrongShard(requestId, cluster.shardFor(key.asText())));
             }
-            LOG.info("Reject DELETE key=" + key + " not leader");
-            return response;
         }
-        ReplicationResult result = context.replicationManager().handleClientDelete(key);
-        if (result.isOk()) {
-            LOG.info("DELETE key=" + key + " ok");
-            return okResponse(requestId);
+        String token = request.path(Constants.READ_TOKEN).asText(null);
+        Long maxStalenessMs = request.path(Constants.MAX_STALENESS_MS).canConvertToLong()
+                ? request.get(Constants.MAX_STALENESS_MS).longValue() : null;
+        if (token != null || maxStalenessMs != null) {
+            ReadToken readToken;
+            try {
+                readToken = token == null ? null : ReadToken.fromString(token);
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.completedFuture(ClientResponse.error(requestId, Constants.ERROR_BAD_REQUEST, e.getMessage()));
+            }
+            if (isLinearizable(maxStalenessMs)) {
+                Map<Integer, ShardInfo> shards = new LinkedHashMap<>();
+                for (JsonNode key : keys) {
+                    ShardInfo shard = cluster.shardFor(key.asText());
+                    shards.putIfAbsent(shard.shardId(), shard);
+                }
+                return linearizable(requestId, List.copyOf(shards.values()), () -> localMultiGet(keys, requestId));
+            }
+            Map<String, ShardInfo> staleShards = new LinkedHashMap<>();
+            Map<String, ArrayNode> staleKeys = new LinkedHashMap<>();
+            for (JsonNode key : keys) {
+                ShardInfo shard = cluster.shardFor(key.asText());
+                if (!readable(shard, readToken, maxStalenessMs)) {
+                    String leaderId = Objects.requireNonNullElse(shard.leaderNodeId(), "");
+                    staleShards.putIfAbsent(leaderId, shard);
+                    staleKeys.computeIfAbsent(leaderId, id -> JsonUtil.MAPPER.createArrayNode()).add(key);
+                }
+            }
+            if (!staleKeys.isEmpty()) {
+                return forwardMultiGet(request, requestId, keys, staleShards, staleKeys);
+            }
         }
-        ObjectNode response = errorResponse(requestId, result.errorCode(), result.errorCode());
-        if (Constants.ERROR_NOT_LEADER.equals(result.errorCode()) && cluster.getLeaderNodeId() != null) {
-            response.put(Constants.LEADER_ID, cluster.getLeaderNodeId());
+        return CompletableFuture.completedFuture(localMultiGet(keys, requestId));
+    }
+
+    private CompletableFuture<Message> forwardMultiGet(ObjectNode request, String requestId, JsonNode keys,
+                                                       Map<String, ShardInfo> staleShards, Map<String, ArrayNode> staleKeys) {
+        List<CompletableFuture<Message>> forwarded = new ArrayList<>(staleKeys.size());
+        for (Map.Entry<String, ArrayNode> group : staleKeys.entrySet()) {
+            ObjectNode subRequest = request.deepCopy();
+            subRequest.remove(Constants.READ_TOKEN);
+            subRequest.remove(Constants.MAX_STALENESS_MS);
+            subRequest.set(Constants.KEYS, group.getValue());
+            forwarded.add(forward(staleShards.get(group.getKey()), new JsonMessage(subRequest)));
         }
-        LOG.info("DELETE key=" + key + " error=" + result.errorCode());
-        return response;
+        return CompletableFuture.allOf(forwarded.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            ObjectNode remote = JsonUtil.MAPPER.createObjectNode();
+            for (CompletableFuture<Message> future : forwarded) {
+                Message message = future.join();
+                if (!(message instanceof JsonMessage json) || !json.node().path(Constants.VALUE).isObject()) {
+                    return message;
+                }
+                remote.setAll((ObjectNode) json.node().get(Constants.VALUE));
+            }
+            ObjectNode response = okResponse(requestId);
+            ObjectNode values = response.putObject(Constants.VALUE);
+            boolean local = false;
+            for (JsonNode key : keys) {
+                JsonNode value = remote.get(key.asText());
+                if (value != null) {
+                    values.set(key.asText(), value);
+                } else {
+                    local = true;
+                    putLocal(values, key.asText());
+                }
+            }
+            if (local) {
+                readsLocal.incrementAndGet();
+            }
+            return new JsonMessage(response);
+        });
     }
 
-    private ObjectNode handleClientGet(ObjectNode request, String requestId) {
-        String key = request.path(Constants.KEY).asText(null);
-        if (!isValidKey(key)) {
-            return errorResponse(requestId, Constants.ERROR_BAD_REQUEST, "Invalid key");
+    private Message localMultiGet(JsonNode keys, String requestId) {
+        readsLocal.incrementAndGet();
+        ObjectNode response = okResponse(requestId);
+        ObjectNode values = response.putObject(Constants.VALUE);
+        for (JsonNode key : keys) {
+            putLocal(values, key.asText());
         }
+        return new JsonMessage(response);
+    }
+
+    private void putLocal(ObjectNode values, String key) {
         ValueEntry entry = context.store().get(key);
-        ObjectNode response = okResponse(requestId);
         if (entry == null || entry.tombstone()) {
-            response.put(Constants.FOUND, false);
+            values.putNull(key);
         } else {
-            response.put(Constants.FOUND, true);
-            response.put(Constants.VALUE, entry.value());
+            values.put(key, entry.value());
+        }
+    }
+
+    private boolean readable(ShardInfo shard, ReadToken token, Long maxStalenessMs) {
+        if (context.nodeId().equals(shard.leaderNodeId())) {
+            return true;
+        }
+        if (token != null && !token.originNodeId().equals(context.nodeId()) && context.appliedSeq(token.originNodeId()) < token.seq()) {
+            return false;
+        }
+        return maxStalenessMs == null || context.elector().stalenessMs(shard.leaderNodeId()) <= maxStalenessMs;
+    }
+
+    private CompletableFuture<Message> forward(ShardInfo shard, Message request) {
+        String leaderId = shard.leaderNodeId();
+        NodeInfo leader = leaderId == null ? null : context.clusterState().getNode(leaderId).orElse(null);
+        if (leader == null || leaderId.equals(context.nodeId())) {
+            return CompletableFuture.completedFuture(staleRead(request.requestId(), shard));
+        }
+        readsForwarded.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return forwardPool.get(leader.host(), leader.port(), Constants.DEFAULT_TIMEOUT_MS)
+                        .request(request, Constants.DEFAULT_TIMEOUT_MS);
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Read forward to " + leaderId + " failed", e);
+                return staleRead(request.requestId(), shard);
+            }
+        }, forwardExecutor);
+    }
+
+    private String readToken(long seq) {
+        return new ReadToken(context.nodeId(), seq).toWire();
+    }
+
+    private ClientResponse notLeader(String requestId, ShardInfo shard) {
+        return ClientResponse.error(requestId, Constants.ERROR_NOT_LEADER, "Not a leader").withLeader(shard.leaderNodeId());
+    }
+
+    private ClientResponse staleRead(String requestId, ShardInfo shard) {
+        return ClientResponse.error(requestId, Constants.ERROR_STALE_READ, "Shard " + shard.shardId() + " is behind the read bound")
+                .withLeader(shard.leaderNodeId());
+    }
+
+    private ClientResponse wrongShard(String requestId, ShardInfo shard) {
+        return ClientResponse.error(requestId, Constants.ERROR_WRONG_SHARD, "Shard " + shard.shardId() + " is not stored here")
+                .withLeader(shard.leaderNodeId());
+    }
+
+    private ClientResponse replicationError(String requestId, ReplicationResult result, ShardInfo shard) {
+        ClientResponse response = ClientResponse.error(requestId, result.errorCode(), result.errorCode());
+        if (Constants.ERROR_NOT_LEADER.equals(result.errorCode())) {
+            return response.withLeader(shard.leaderNodeId());
+        }
+        if (result.retryAfterMs() > 0) {
+            return response.withRetryAfter(result.retryAfterMs());
         }
-        LOG.fine("GET key=" + key + " found=" + response.path(Constants.FOUND).asBoolean());
         return response;
     }
 
+    private CompletableFuture<Message> handleClientGet(ClientRequest request) {
+        String key = request.key();
+        if (!isValidKey(key)) {
+            return CompletableFuture.completedFuture(ClientResponse.error(request.requestId(), Constants.ERROR_BAD_REQUEST, "Invalid key"));
+        }
+        ClusterState cluster = context.clusterState();
+        ShardInfo shard = cluster.shardFor(key);
+        if (!holds(cluster, key)) {
+            return CompletableFuture.completedFuture(wrongShard(request.requestId(), shard));
+        }
+        if (request.isBounded()) {
+            ReadToken token;
+            try {
+                token = request.readToken() == null ? null : ReadToken.fromString(request.readToken());
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.completedFuture(ClientResponse.error(request.requestId(), Constants.ERROR_BAD_REQUEST, e.getMessage()));
+            }
+            if (isLinearizable(request.maxStalenessMs())) {
+                return linearizable(request.requestId(), List.of(shard), () -> localGet(request));
+            }
+            if (!readable(shard, token, request.maxStalenessMs())) {
+                LOG.fine("GET key=" + key + " forwarded to " + shard.leaderNodeId());
+                return forward(shard, request.unbounded());
+            }
+        }
+        return CompletableFuture.completedFuture(localGet(request));
+    }
+
+    private Message localGet(ClientRequest request) {
+        readsLocal.incrementAndGet();
+        ValueEntry entry = context.store().get(request.key());
+        String value = entry == null || entry.tombstone() ? null : entry.value();
+        LOG.fine("GET key=" + request.key() + " found=" + (value != null));
+        return ClientResponse.found(request.requestId(), value);
+    }
+
+    private static boolean isLinearizable(Long maxStalenessMs) {
+        return maxStalenessMs != null && maxStalenessMs == 0L;
+    }
+
+    private CompletableFuture<Message> linearizable(String requestId, List<ShardInfo> shards, Supplier<Message> read) {
+        List<ShardInfo> unleased = new ArrayList<>();
+        for (ShardInfo shard : shards) {
+            if (!context.nodeId().equals(shard.leaderNodeId())) {
+                return CompletableFuture.completedFuture(notLeader(requestId, shard));
+            }
+            if (!context.elector().holdsLease(shard)) {
+                unleased.add(shard);
+            }
+        }
+        if (unleased.isEmpty()) {
+            leaseReads.incrementAndGet();
+            return CompletableFuture.completedFuture(read.get());
+        }
+        quorumReads.incrementAndGet();
+        List<CompletableFuture<Boolean>> confirmations = new ArrayList<>(unleased.size());
+        for (ShardInfo shard : unleased) {
+            confirmations.add(context.elector().confirmLeadership(shard));
+        }
+        return CompletableFuture.allOf(confirmations.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            for (int i = 0; i < unleased.size(); i++) {
+                if (!confirmations.get(i).join()) {
+                    return notLeader(requestId, context.clusterState().shard(unleased.get(i).shardId()));
+                }
+            }
+            return read.get();
+        });
+    }
+
     private ObjectNode handleClientDump(ObjectNode request, String requestId) {
         Map<String, String> dump = context.store().dump();
         ObjectNode response = okResponse(requestId);
@@ -201,64 +593,167 @@ public final class NodeServer {
         return response;
     }
 
-    private ObjectNode handleReplicationPut(ObjectNode request) {
-        return handleReplicationApply(request, true);
+    private ObjectNode handleClientStats(String requestId) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ObjectNode response = okResponse(requestId);
+        ObjectNode stats = response.putObject(Constants.VALUE);
+        stats.put(Constants.TRANSPORT, context.config().transport().toWire());
+        stats.put(Constants.EXECUTION_MODE, context.config().executionMode().toWire());
+        stats.put(Constants.WIRE_FORMAT, context.config().peerWireFormat().toWire());
+        NodeStore store = context.store();
+        stats.put(Constants.STORAGE_ENGINE, context.config().storageEngine().toWire());
+        stats.put(Constants.STORE_KEYS, store.size());
+        stats.put(Constants.STORE_COUNTS_ESTIMATED, store.countsEstimated());
+        stats.put(Constants.STORE_OFF_HEAP_BYTES, store.offHeapBytes());
+        stats.put(Constants.TOMBSTONES, store.tombstones());
+        stats.put(Constants.TOMBSTONES_REAPED, store.tombstonesReaped());
+        stats.put(Constants.TOMBSTONE_BYTES_RECLAIMED, store.tombstoneBytesReclaimed());
+        stats.put(Constants.SAFE_SEQ, context.replicationManager().safeSeq());
+        if (store instanceof LsmNodeStore lsm) {
+            stats.put(Constants.LSM_TABLES, lsm.tables());
+            stats.put(Constants.LSM_DISK_BYTES, lsm.diskBytes());
+            stats.put(Constants.LSM_FLUSHES, lsm.flushes());
+            stats.put(Constants.LSM_COMPACTIONS, lsm.compactions());
+        }
+        WriteAheadLog wal = store.wal();
+        if (wal != null) {
+            stats.put(Constants.FSYNC_POLICY, wal.policy().toWire());
+            stats.put(Constants.WAL_RECORDS, wal.records());
+            stats.put(Constants.WAL_SYNCS, wal.syncs());
+            stats.put(Constants.WAL_SEGMENT, wal.segment());
+            if (context.snapshots() != null) {
+                stats.put(Constants.SNAPSHOT_SEQ, context.snapshots().snapshotSeq());
+            }
+        }
+        ReplicationManager replication = context.replicationManager();
+        stats.put(Constants.REPL_WINDOW, Constants.REPL_WINDOW_OPS);
+        stats.put(Constants.REPL_PENDING, replication.pending());
+        stats.put(Constants.REPL_REJECTED, replication.rejected());
+        stats.put(Constants.WRITE_BATCHES, replication.writeBatches());
+        stats.put(Constants.WRITE_BATCH_OPS, replication.writeBatchOps());
+        stats.put(Constants.READS_LOCAL, readsLocal.get());
+        stats.put(Constants.READS_FORWARDED, readsForwarded.get());
+        stats.put(Constants.LEASE_READS, leaseReads.get());
+        stats.put(Constants.QUORUM_READS, quorumReads.get());
+        ClusterState cluster = context.clusterState();
+        stats.put(Constants.CLUSTER_VERSION, cluster.version());
+        stats.put(Constants.CONFIG_EPOCH, cluster.configEpoch());
+        stats.put(Constants.GOSSIP_PULLS, context.gossip().pulls());
+        stats.put(Constants.GOSSIP_PUSHES, context.gossip().pushes());
+        ObjectNode elections = stats.putObject(Constants.ELECTIONS);
+        for (ShardInfo shard : cluster.effectiveShards()) {
+            ObjectNode election = elections.putObject(Integer.toString(shard.shardId()));
+            election.put(Constants.TERM, context.elector().term(shard.shardId()));
+            election.put(Constants.LEADER_ID, shard.leaderNodeId());
+        }
+        ObjectNode inFlight = stats.putObject(Constants.REPL_IN_FLIGHT);
+        for (NodeInfo node : cluster.nodesValues()) {
+            if (!node.nodeId().equals(context.nodeId())) {
+                inFlight.put(node.nodeId(), replication.inFlight(node.nodeId()));
+            }
+        }
+        stats.put(Constants.CONNECTIONS, nioServer != null
+                ? nioServer.openConnections()
+                : context.config().maxConnections() - connectionPermits.availablePermits());
+        stats.put(Constants.THREADS, threads.getThreadCount());
+        stats.put(Constants.PEAK_THREADS, threads.getPeakThreadCount());
+        threads.resetPeakThreadCount();
+        return response;
     }
 
-    private ObjectNode handleReplicationDelete(ObjectNode request) {
-        return handleReplicationApply(request, false);
+    private CompletableFuture<Message> handleReplicationBatch(ReplBatch batch) {
+        String origin = batch.originNodeId();
+        long epoch = batch.epoch();
+        if (origin == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!context.clusterState().isLeaderOfAny(origin)) {
+            LOG.fine("Ignore replication from " + origin + ", not a current leader");
+            return CompletableFuture.completedFuture(null);
+        }
+        SeqWatermark watermark = context.watermarks().compute(origin, (id, current) ->
+                current == null || current.epoch() < epoch ? new SeqWatermark(epoch) : current);
+        if (watermark.epoch() != epoch) {
+            LOG.fine("Ignore replication from " + origin + ", epoch " + epoch + " was superseded");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (batch.snapshot()) {
+            return installSnapshot(batch, watermark);
+        }
+        delayReplication();
+        ClusterState cluster = context.clusterState();
+        List<ReplOp> applied = new ArrayList<>(batch.ops().size());
+        List<CompletableFuture<Void>> writes = new ArrayList<>(batch.ops().size());
+        for (ReplOp op : batch.ops()) {
+            CompletableFuture<Void> write = applyReplicated(op, watermark, cluster);
+            if (write != null) {
+                applied.add(op);
+                writes.add(write);
+            }
+        }
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            if (error != null) {
+                LOG.log(Level.WARNING, "Replicated batch from " + origin + " failed to reach the WAL", error);
+                return null;
+            }
+            for (ReplOp op : applied) {
+                watermark.markApplied(op.seq());
+            }
+            watermark.advanceSafeSeq(batch.safeSeq());
+            return new ReplAck(context.nodeId(), epoch, context.epoch(), watermark.contiguous());
+        });
     }
 
-    private ObjectNode handleReplicationApply(ObjectNode request, boolean isPut) {
-        String opId = request.path(Constants.OP_ID).asText(null);
-        String origin = request.path(Constants.ORIGIN_NODE_ID).asText(null);
-        String key = request.path(Constants.KEY).asText(null);
-        long seq = request.path(Constants.SEQ).asLong(0L);
-        if (!isValidKey(key) || opId == null || origin == null) {
-            return null;
-        }
-        boolean seen = dedupStore.seenOrAdd(opId);
-        if (!seen) {
-            delayReplication();
-            if (isPut) {
-                String value = request.path(Constants.VALUE).asText(null);
-                if (value != null) {
-                    context.store().applyPut(key, value, seq);
-                }
+    private CompletableFuture<Message> installSnapshot(ReplBatch batch, SeqWatermark watermark) {
+        ClusterState cluster = context.clusterState();
+        for (ReplOp op : batch.ops()) {
+            if (!isValidKey(op.key()) || !holds(cluster, op.key())) {
+                continue;
+            }
+            if (op.isPut()) {
+                context.store().applyPut(op.key(), op.value(), op.seq());
             } else {
-                context.store().applyDelete(key, seq);
+                context.store().applyDelete(op.key(), op.seq());
             }
         }
-        sendAck(origin, opId);
-        if (!seen) {
-            LOG.fine("Applied opId=" + opId + " key=" + key);
-        } else {
-            LOG.fine("Duplicate opId=" + opId + " key=" + key);
+        if (!batch.ops().isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
-        return null;
+        watermark.skipTo(batch.baseSeq());
+        return context.store().sync().handle((ignored, error) -> {
+            if (error != null) {
+                LOG.log(Level.WARNING, "Snapshot from " + batch.originNodeId() + " failed to reach the WAL", error);
+                return null;
+            }
+            watermark.advanceTo(batch.baseSeq());
+            LOG.info("Installed snapshot from " + batch.originNodeId() + " up to seq " + batch.baseSeq());
+            return new ReplAck(context.nodeId(), batch.epoch(), context.epoch(), watermark.contiguous());
+        });
     }
 
-    private ObjectNode handleReplicationAck(ObjectNode request) {
-        String opId = request.path(Constants.OP_ID).asText(null);
-        String fromNodeId = request.path(Constants.FROM_NODE_ID).asText(null);
-        if (opId != null && fromNodeId != null) {
-            context.replicationManager().onAck(opId, fromNodeId);
-            LOG.fine("ACK opId=" + opId + " from=" + fromNodeId);
+    private CompletableFuture<Void> applyReplicated(ReplOp op, SeqWatermark watermark, ClusterState cluster) {
+        String key = op.key();
+        switch (watermark.claim(op.seq())) {
+            case DUPLICATE -> {
+                LOG.fine("Duplicate seq=" + op.seq() + " key=" + key);
+                return context.store().sync();
+            }
+            case AHEAD -> {
+                LOG.fine("Seq " + op.seq() + " is beyond the replication window, waiting for a resend");
+                return null;
+            }
+            case ADDED -> {
+            }
         }
-        return null;
-    }
-
-    private void sendAck(String originNodeId, String opId) {
-        ClusterState cluster = context.clusterState();
-        NodeInfo target = cluster.getNode(originNodeId).orElse(null);
-        if (target == null) {
-            return;
+        if (!isValidKey(key) || (op.isPut() && op.value() == null) || !holds(cluster, key)) {
+            LOG.fine("Skip seq=" + op.seq() + " key=" + key + ", not stored here");
+            return CompletableFuture.completedFuture(null);
         }
-        ObjectNode ack = JsonUtil.object();
-        ack.put(Constants.TYPE, Constants.REPL_ACK);
-        ack.put(Constants.OP_ID, opId);
-        ack.put(Constants.FROM_NODE_ID, context.nodeId());
-        NetworkClient.sendOneWay(target.host(), target.port(), ack, Constants.DEFAULT_TIMEOUT_MS);
+        CompletableFuture<Void> write = op.isPut()
+                ? context.store().applyPut(key, op.value(), op.seq())
+                : context.store().applyDelete(key, op.seq());
+        LOG.fine("Applied seq=" + op.seq() + " key=" + key);
+        return write;
     }
 
     private void delayReplication() {
@@ -288,16 +783,4 @@ public final class NodeServer {
         response.put(Constants.STATUS, Constants.STATUS_OK);
         return response;
     }
-
-    private ObjectNode errorResponse(String requestId, String code, String message) {
-        ObjectNode response = JsonUtil.object();
-        if (requestId != null) {
-            response.put(Constants.REQUEST_ID, requestId);
-        }
-        response.put(Constants.STATUS, Constants.STATUS_ERROR);
-        response.put(Constants.ERROR_CODE, code);
-        response.put(Constants.ERROR_MESSAGE, message);
-        return response;
-    }
 }
-
@@ -1,42 +1,56 @@
 package distr.node;
 
-import java.util.LinkedHashMap;
+import distr.common.Constants;
+
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-public final class NodeStore {
-    private final ConcurrentHashMap<String, ValueEntry> map = new ConcurrentHashMap<>();
-
-    public void applyPut(String key, String value, long seq) {
-        map.compute(key, (k, existing) -> {
-            if (existing == null || seq >= existing.seq()) {
-                return new ValueEntry(value, false, seq);
-            }
-            return existing;
-        });
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToLongFunction;
+
+public interface NodeStore {
+    WriteAheadLog wal();
+
+    void restore(String key, ValueEntry entry);
+
+    ValueEntry get(String key);
+
+    long maxSeq();
+
+    long size();
+
+    long offHeapBytes();
+
+    long tombstones();
+
+    long tombstonesReaped();
+
+    long tombstoneBytesReclaimed();
+
+    long reapTombstones(ToLongFunction<String> safeSeq);
+
+    default boolean shouldReap() {
+        long tombstones = tombstones();
+        return tombstones > 0 && tombstones * Constants.TOMBSTONE_REAP_MIN_SHARE >= size();
+    }
+
+    default boolean countsEstimated() {
+        return false;
     }
 
-    public void applyDelete(String key, long seq) {
-        map.compute(key, (k, existing) -> {
-            if (existing == null || seq >= existing.seq()) {
-                return new ValueEntry(null, true, seq);
-            }
-            return existing;
-        });
+    Iterable<Map.Entry<String, ValueEntry>> entries();
+
+    Map<String, String> dump();
+
+    default CompletableFuture<Void> applyPut(String key, String value, long seq) {
+        restore(key, new ValueEntry(value, false, seq));
+        return wal() == null ? CompletableFuture.completedFuture(null) : wal().appendPut(key, value, seq);
     }
 
-    public ValueEntry get(String key) {
-        return map.get(key);
+    default CompletableFuture<Void> applyDelete(String key, long seq) {
+        restore(key, new ValueEntry(null, true, seq));
+        return wal() == null ? CompletableFuture.completedFuture(null) : wal().appendDelete(key, seq);
     }
 
-    public Map<String, String> dump() {
-        Map<String, String> out = new LinkedHashMap<>();
-        for (var entry : map.entrySet()) {
-            if (!entry.getValue().tombstone()) {
-                out.put(entry.getKey(), entry.getValue().value());
-            }
-        }
-        return out;
+    default CompletableFuture<Void> sync() {
+        return wal() == null ? CompletableFuture.completedFuture(null) : wal().sync();
     }
 }
-
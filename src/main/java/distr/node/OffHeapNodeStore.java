@@ -0,0 +1,398 @@
+package distr.node;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+public final class OffHeapNodeStore implements NodeStore {
+    private static final int SEGMENT_BITS = 6;
+    private static final int HEADER_BYTES = 16;
+    private static final int TOMBSTONE = -1;
+    private static final int MIN_SLAB_BYTES = 64 * 1024;
+    private static final int MAX_SLAB_BYTES = 16 * 1024 * 1024;
+    private static final int MIN_SLOTS = 16;
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    private final WriteAheadLog wal;
+
+    public OffHeapNodeStore() {
+        this(null);
+    }
+
+    public OffHeapNodeStore(WriteAheadLog wal) {
+        this.wal = wal;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public WriteAheadLog wal() {
+        return wal;
+    }
+
+    @Override
+    public void restore(String key, ValueEntry entry) {
+        int hash = hash(key);
+        byte[] value = entry.tombstone() ? null : entry.value().getBytes(StandardCharsets.UTF_8);
+        segmentFor(hash).put(hash, key.getBytes(StandardCharsets.UTF_8), value, entry.seq());
+    }
+
+    @Override
+    public ValueEntry get(String key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(hash, key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public long maxSeq() {
+        long max = 0L;
+        for (Segment segment : segments) {
+            max = Math.max(max, segment.maxSeq());
+        }
+        return max;
+    }
+
+    @Override
+    public long size() {
+        long size = 0L;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        long bytes = 0L;
+        for (Segment segment : segments) {
+            bytes += segment.allocatedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long tombstones() {
+        long tombstones = 0L;
+        for (Segment segment : segments) {
+            tombstones += segment.tombstones();
+        }
+        return tombstones;
+    }
+
+    @Override
+    public long tombstonesReaped() {
+        long reaped = 0L;
+        for (Segment segment : segments) {
+            reaped += segment.reaped();
+        }
+        return reaped;
+    }
+
+    @Override
+    public long tombstoneBytesReclaimed() {
+        long bytes = 0L;
+        for (Segment segment : segments) {
+            bytes += segment.reclaimedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long reapTombstones(ToLongFunction<String> safeSeq) {
+        long newest = maxSeq();
+        long reaped = 0L;
+        for (Segment segment : segments) {
+            reaped += segment.reap(safeSeq, newest);
+        }
+        return reaped;
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, ValueEntry>> entries() {
+        return () -> Arrays.stream(segments).flatMap(segment -> segment.entries().stream()).iterator();
+    }
+
+    @Override
+    public Map<String, String> dump() {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (Map.Entry<String, ValueEntry> entry : entries()) {
+            if (!entry.getValue().tombstone()) {
+                out.put(entry.getKey(), entry.getValue().value());
+            }
+        }
+        return out;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    private static int hash(String key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Segment {
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private ByteBuffer current;
+        private int position;
+        private long[] addresses = new long[MIN_SLOTS];
+        private int[] hashes = new int[MIN_SLOTS];
+        private int size;
+        private int tombstones;
+        private long reaped;
+        private long reclaimedBytes;
+        private long liveBytes;
+        private long deadBytes;
+        private long allocatedBytes;
+        private long maxSeq;
+
+        synchronized void put(int hash, byte[] key, byte[] value, long seq) {
+            int slot = find(hash, key);
+            long existing = addresses[slot];
+            if (existing != 0L) {
+                if (seq < seqAt(existing)) {
+                    return;
+                }
+                int previous = recordBytes(existing);
+                liveBytes -= previous;
+                deadBytes += previous;
+                if (isTombstone(existing)) {
+                    tombstones--;
+                }
+            }
+            if (value == null) {
+                tombstones++;
+            }
+            long address = append(key, value, seq);
+            addresses[slot] = address;
+            hashes[slot] = hash;
+            liveBytes += recordBytes(address);
+            maxSeq = Math.max(maxSeq, seq);
+            if (existing == 0L && ++size * 4L > addresses.length * 3L) {
+                resize();
+            }
+            if (deadBytes > liveBytes && deadBytes > MIN_SLAB_BYTES) {
+                compact();
+            }
+        }
+
+        synchronized ValueEntry get(int hash, byte[] key) {
+            long address = addresses[find(hash, key)];
+            return address == 0L ? null : entryAt(address);
+        }
+
+        synchronized long maxSeq() {
+            return maxSeq;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        synchronized int tombstones() {
+            return tombstones;
+        }
+
+        synchronized long reaped() {
+            return reaped;
+        }
+
+        synchronized long reclaimedBytes() {
+            return reclaimedBytes;
+        }
+
+        synchronized int reap(ToLongFunction<String> safeSeq, long newest) {
+            if (tombstones == 0) {
+                return 0;
+            }
+            int removed = 0;
+            int slot = 0;
+            while (slot < addresses.length) {
+                long address = addresses[slot];
+                if (address != 0L && isTombstone(address) && seqAt(address) < newest
+                        && seqAt(address) <= safeSeq.applyAsLong(keyAt(address))) {
+                    int bytes = recordBytes(address);
+                    liveBytes -= bytes;
+                    deadBytes += bytes;
+                    reclaimedBytes += bytes;
+                    removeAt(slot);
+                    size--;
+                    tombstones--;
+                    removed++;
+                } else {
+                    slot++;
+                }
+            }
+            reaped += removed;
+            if (deadBytes > liveBytes && deadBytes > MIN_SLAB_BYTES) {
+                compact();
+            }
+            return removed;
+        }
+
+        synchronized List<Map.Entry<String, ValueEntry>> entries() {
+            List<Map.Entry<String, ValueEntry>> out = new ArrayList<>(size);
+            for (long address : addresses) {
+                if (address != 0L) {
+                    out.add(new AbstractMap.SimpleImmutableEntry<>(keyAt(address), entryAt(address)));
+                }
+            }
+            return out;
+        }
+
+        private int find(int hash, byte[] key) {
+            int mask = addresses.length - 1;
+            int slot = hash & mask;
+            while (addresses[slot] != 0L && (hashes[slot] != hash || !keyEquals(addresses[slot], key))) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void removeAt(int slot) {
+            int mask = addresses.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (addresses[next] != 0L) {
+                int home = hashes[next] & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    addresses[hole] = addresses[next];
+                    hashes[hole] = hashes[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            addresses[hole] = 0L;
+            hashes[hole] = 0;
+        }
+
+        private void resize() {
+            long[] oldAddresses = addresses;
+            int[] oldHashes = hashes;
+            addresses = new long[oldAddresses.length * 2];
+            hashes = new int[oldAddresses.length * 2];
+            int mask = addresses.length - 1;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] != 0L) {
+                    int slot = oldHashes[i] & mask;
+                    while (addresses[slot] != 0L) {
+                        slot = (slot + 1) & mask;
+                    }
+                    addresses[slot] = oldAddresses[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+
+        private void compact() {
+            List<ByteBuffer> old = new ArrayList<>(slabs);
+            slabs.clear();
+            current = null;
+            position = 0;
+            allocatedBytes = 0L;
+            for (int i = 0; i < addresses.length; i++) {
+                long address = addresses[i];
+                if (address != 0L) {
+                    ByteBuffer source = old.get(slabIndex(address));
+                    int bytes = recordBytes(source, offset(address));
+                    long moved = reserve(bytes);
+                    current.put(offset(moved), source, offset(address), bytes);
+                    addresses[i] = moved;
+                }
+            }
+            deadBytes = 0L;
+        }
+
+        private long append(byte[] key, byte[] value, long seq) {
+            int bytes = HEADER_BYTES + key.length + (value == null ? 0 : value.length);
+            long address = reserve(bytes);
+            int offset = offset(address);
+            current.putInt(offset, key.length);
+            current.putInt(offset + 4, value == null ? TOMBSTONE : value.length);
+            current.putLong(offset + 8, seq);
+            current.put(offset + HEADER_BYTES, key);
+            if (value != null) {
+                current.put(offset + HEADER_BYTES + key.length, value);
+            }
+            return address;
+        }
+
+        private long reserve(int bytes) {
+            if (current == null || current.capacity() - position < bytes) {
+                int next = current == null ? MIN_SLAB_BYTES : Math.min(MAX_SLAB_BYTES, current.capacity() * 2);
+                current = ByteBuffer.allocateDirect(Math.max(next, bytes));
+                slabs.add(current);
+                position = 0;
+                allocatedBytes += current.capacity();
+            }
+            long address = ((long) slabs.size() << 32) | position;
+            position += bytes;
+            return address;
+        }
+
+        private boolean keyEquals(long address, byte[] key) {
+            ByteBuffer slab = slabs.get(slabIndex(address));
+            int offset = offset(address);
+            if (slab.getInt(offset) != key.length) {
+                return false;
+            }
+            return slab.slice(offset + HEADER_BYTES, key.length).mismatch(ByteBuffer.wrap(key)) < 0;
+        }
+
+        private String keyAt(long address) {
+            ByteBuffer slab = slabs.get(slabIndex(address));
+            int offset = offset(address);
+            byte[] key = new byte[slab.getInt(offset)];
+            slab.get(offset + HEADER_BYTES, key);
+            return new String(key, StandardCharsets.UTF_8);
+        }
+
+        private ValueEntry entryAt(long address) {
+            ByteBuffer slab = slabs.get(slabIndex(address));
+            int offset = offset(address);
+            int valueLength = slab.getInt(offset + 4);
+            long seq = slab.getLong(offset + 8);
+            if (valueLength == TOMBSTONE) {
+                return new ValueEntry(null, true, seq);
+            }
+            byte[] value = new byte[valueLength];
+            slab.get(offset + HEADER_BYTES + slab.getInt(offset), value);
+            return new ValueEntry(new String(value, StandardCharsets.UTF_8), false, seq);
+        }
+
+        private boolean isTombstone(long address) {
+            return slabs.get(slabIndex(address)).getInt(offset(address) + 4) == TOMBSTONE;
+        }
+
+        private long seqAt(long address) {
+            return slabs.get(slabIndex(address)).getLong(offset(address) + 8);
+        }
+
+        private int recordBytes(long address) {
+            return recordBytes(slabs.get(slabIndex(address)), offset(address));
+        }
+
+        private static int recordBytes(ByteBuffer slab, int offset) {
+            return HEADER_BYTES + slab.getInt(offset) + Math.max(0, slab.getInt(offset + 4));
+        }
+
+        private static int slabIndex(long address) {
+            return (int) (address >>> 32) - 1;
+        }
+
+        private static int offset(long address) {
+            return (int) address;
+        }
+    }
+}
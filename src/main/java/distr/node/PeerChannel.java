@@ -0,0 +1,199 @@
+package distr.node;
+
+import distr.common.ClusterState;
+import distr.common.Constants;
+import distr.common.EncodedOp;
+import distr.common.MalformedMessageException;
+import distr.common.Message;
+import distr.common.NodeInfo;
+import distr.common.ReplAck;
+import distr.common.ReplOp;
+import distr.common.ShardInfo;
+import distr.common.WireStream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class PeerChannel {
+    private static final Logger LOG = Logger.getLogger(PeerChannel.class.getName());
+    private final NodeContext context;
+    private final NodeInfo node;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile boolean rewindRequested;
+    private volatile WireStream stream;
+    private long sentSeq;
+    private long sentSafeSeq;
+    private long lastAcked = -1L;
+    private long lastAckChangeAt;
+
+    public PeerChannel(NodeContext context, NodeInfo node) {
+        this.context = context;
+        this.node = node;
+        this.writerThread = new Thread(this::writeLoop, "peer-" + node.nodeId());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public NodeInfo node() {
+        return node;
+    }
+
+    public void signal() {
+        LockSupport.unpark(writerThread);
+    }
+
+    public void rewind() {
+        rewindRequested = true;
+        signal();
+    }
+
+    public void close() {
+        running = false;
+        writerThread.interrupt();
+        WireStream current = stream;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void writeLoop() {
+        long backoffMs = Constants.PEER_RECONNECT_MIN_MS;
+        while (running) {
+            try {
+                if (!ship()) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Constants.RETRY_DELAY_MS));
+                }
+                backoffMs = Constants.PEER_RECONNECT_MIN_MS;
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Peer " + node.nodeId() + " unavailable, retry in " + backoffMs + "ms", e);
+                disconnect();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, Constants.PEER_RECONNECT_MAX_MS);
+            }
+        }
+        disconnect();
+    }
+
+    private boolean ship() throws IOException {
+        ReplicationManager manager = context.replicationManager();
+        ReplicationLog log = manager.log();
+        long acked = manager.ackedSeq(node.nodeId());
+        long now = System.currentTimeMillis();
+        if (acked != lastAcked) {
+            lastAcked = acked;
+            lastAckChangeAt = now;
+        }
+        if (rewindRequested || (sentSeq > acked && now - lastAckChangeAt >= Constants.REPL_STALL_MS)) {
+            rewindRequested = false;
+            sentSeq = acked;
+            lastAckChangeAt = now;
+        }
+        long safeSeq = manager.safeSeq();
+        if (sentSeq >= log.lastSeq()) {
+            if (stream == null || safeSeq <= sentSafeSeq) {
+                return false;
+            }
+            stream.writeBatch(context.nodeId(), context.epoch(), sentSeq, safeSeq, List.of(), false);
+            sentSafeSeq = safeSeq;
+            return false;
+        }
+        if (stream == null) {
+            connect();
+            sentSeq = acked;
+            sentSafeSeq = 0L;
+        }
+        if (sentSeq <= acked) {
+            lastAckChangeAt = now;
+        }
+        List<EncodedOp> ops = log.range(sentSeq + 1, Constants.REPL_BATCH_MAX_OPS);
+        if (ops == null) {
+            sentSeq = shipSnapshot(log);
+            return true;
+        }
+        if (ops.isEmpty()) {
+            return false;
+        }
+        stream.writeBatch(context.nodeId(), context.epoch(), sentSeq, safeSeq, ops, false);
+        sentSeq += ops.size();
+        sentSafeSeq = safeSeq;
+        return true;
+    }
+
+    private long shipSnapshot(ReplicationLog log) throws IOException {
+        long resumeSeq = log.firstSeq() - 1;
+        LOG.info("Peer " + node.nodeId() + " is behind the replication log at seq " + sentSeq
+                + ", shipping snapshot up to seq " + resumeSeq);
+        List<EncodedOp> chunk = new ArrayList<>(Constants.REPL_BATCH_MAX_OPS);
+        ClusterState cluster = context.clusterState();
+        boolean sharded = !cluster.getShards().isEmpty();
+        for (Map.Entry<String, ValueEntry> entry : context.store().entries()) {
+            if (sharded && !ships(cluster.shardFor(entry.getKey()))) {
+                continue;
+            }
+            ValueEntry value = entry.getValue();
+            chunk.add(new EncodedOp(new ReplOp(value.tombstone() ? Constants.DELETE : Constants.PUT,
+                    entry.getKey(), value.seq(), value.value())));
+            if (chunk.size() == Constants.REPL_BATCH_MAX_OPS) {
+                stream.writeBatch(context.nodeId(), context.epoch(), resumeSeq, 0L, chunk, true);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            stream.writeBatch(context.nodeId(), context.epoch(), resumeSeq, 0L, chunk, true);
+        }
+        stream.writeBatch(context.nodeId(), context.epoch(), resumeSeq, 0L, List.of(), true);
+        return resumeSeq;
+    }
+
+    private boolean ships(ShardInfo shard) {
+        return context.nodeId().equals(shard.leaderNodeId()) && shard.isReplica(node.nodeId());
+    }
+
+    private void connect() throws IOException {
+        WireStream candidate = WireStream.connect(node.host(), node.port(), context.config().peerWireFormat(), Constants.DEFAULT_TIMEOUT_MS);
+        Thread readerThread = new Thread(() -> readLoop(candidate), "peer-ack-" + node.nodeId());
+        readerThread.setDaemon(true);
+        readerThread.start();
+        stream = candidate;
+    }
+
+    private void readLoop(WireStream source) {
+        try {
+            while (true) {
+                Message message;
+                try {
+                    message = source.read();
+                } catch (MalformedMessageException e) {
+                    continue;
+                }
+                if (message == null) {
+                    break;
+                }
+                if (message instanceof ReplAck ack) {
+                    context.replicationManager().onAck(ack);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Peer " + node.nodeId() + " ack stream closed", e);
+        }
+    }
+
+    private void disconnect() {
+        WireStream current = stream;
+        stream = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
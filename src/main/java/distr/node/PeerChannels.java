@@ -0,0 +1,48 @@
+package distr.node;
+
+import distr.common.NodeInfo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class PeerChannels {
+    private final NodeContext context;
+    private final ConcurrentHashMap<String, PeerChannel> channels = new ConcurrentHashMap<>();
+
+    public PeerChannels(NodeContext context) {
+        this.context = context;
+    }
+
+    public void rewind(String nodeId) {
+        PeerChannel channel = channels.get(nodeId);
+        if (channel != null) {
+            channel.rewind();
+        }
+    }
+
+    public PeerChannel channel(NodeInfo node) {
+        PeerChannel existing = channels.get(node.nodeId());
+        if (existing != null && existing.node().equals(node)) {
+            return existing;
+        }
+        return channels.compute(node.nodeId(), (id, current) -> {
+            if (current != null && current.node().equals(node)) {
+                return current;
+            }
+            if (current != null) {
+                current.close();
+            }
+            return new PeerChannel(context, node);
+        });
+    }
+
+    public void retain(Map<String, NodeInfo> nodes) {
+        channels.entrySet().removeIf(entry -> {
+            if (entry.getValue().node().equals(nodes.get(entry.getKey()))) {
+                return false;
+            }
+            entry.getValue().close();
+            return true;
+        });
+    }
+}
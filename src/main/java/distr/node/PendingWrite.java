@@ -0,0 +1,11 @@
+package distr.node;
+
+import distr.common.Constants;
+
+import java.util.concurrent.CompletableFuture;
+
+public record PendingWrite(String opType, String key, String value, CompletableFuture<ReplicationResult> result) {
+    public boolean isPut() {
+        return Constants.PUT.equals(opType);
+    }
+}
@@ -0,0 +1,60 @@
+package distr.node;
+
+import distr.common.EncodedOp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public final class ReplicationLog {
+    private final ConcurrentSkipListMap<Long, EncodedOp> entries = new ConcurrentSkipListMap<>();
+    private final int capacity;
+    private volatile long lastSeq;
+    private int size;
+
+    public ReplicationLog(int capacity, long lastSeq) {
+        this.capacity = capacity;
+        this.lastSeq = lastSeq;
+    }
+
+    public synchronized void append(long seq, EncodedOp op) {
+        entries.put(seq, op);
+        lastSeq = seq;
+        if (++size > capacity) {
+            entries.pollFirstEntry();
+            size--;
+        }
+    }
+
+    public synchronized void reset(long seq) {
+        entries.clear();
+        size = 0;
+        lastSeq = seq;
+    }
+
+    public long firstSeq() {
+        Map.Entry<Long, EncodedOp> first = entries.firstEntry();
+        return first == null ? lastSeq + 1 : first.getKey();
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    public List<EncodedOp> range(long fromSeq, int maxOps) {
+        List<EncodedOp> ops = new ArrayList<>(Math.min(maxOps, 64));
+        long expected = fromSeq;
+        for (Map.Entry<Long, EncodedOp> entry : entries.tailMap(fromSeq, true).entrySet()) {
+            if (entry.getKey() != expected || ops.size() >= maxOps) {
+                break;
+            }
+            ops.add(entry.getValue());
+            expected++;
+        }
+        if (ops.isEmpty() && fromSeq <= lastSeq) {
+            return null;
+        }
+        return ops;
+    }
+}
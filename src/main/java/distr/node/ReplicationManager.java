@@ -2,228 +2,305 @@ package distr.node;
 
 import distr.common.ClusterState;
 import distr.common.Constants;
-import distr.common.NetworkClient;
+import distr.common.EncodedOp;
 import distr.common.NodeInfo;
+import distr.common.ReplAck;
+import distr.common.ReplOp;
 import distr.common.ReplicationMode;
-import distr.common.JsonUtil;
-
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import distr.common.ShardInfo;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 public final class ReplicationManager {
     private static final Logger LOG = Logger.getLogger(ReplicationManager.class.getName());
     private final NodeContext context;
-    private final ConcurrentHashMap<String, OperationState> operations = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final ConcurrentSkipListMap<Long, OperationState> operations = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, FollowerProgress> ackedByFollower = new ConcurrentHashMap<>();
+    private final ReplicationLog log;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong writeBatches = new AtomicLong();
+    private final AtomicLong writeBatchOps = new AtomicLong();
+    private final WriteCombiner combiner;
 
-    public ReplicationManager(NodeContext context) {
+    public ReplicationManager(NodeContext context, long lastSeq) {
         this.context = context;
-        scheduler.scheduleAtFixedRate(this::retryPending, 200, Constants.RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
-        scheduler.scheduleAtFixedRate(this::cleanup, 1, 1, TimeUnit.MINUTES);
+        this.log = new ReplicationLog(Constants.REPL_LOG_CAPACITY, lastSeq);
+        NodeConfig config = context.config();
+        this.combiner = config.writeBatchWindowUs() > 0
+                ? new WriteCombiner(this, config.writeBatchWindowUs(), config.writeBatchMaxOps())
+                : null;
+    }
+
+    public ReplicationLog log() {
+        return log;
+    }
+
+    public long inFlight(String followerId) {
+        return Math.max(0L, log.lastSeq() - ackedSeq(followerId));
+    }
+
+    public int pending() {
+        return operations.size();
+    }
+
+    public long rejected() {
+        return rejected.get();
     }
 
-    public ReplicationResult handleClientPut(String key, String value) {
-        long seq = context.nextSeq();
-        context.store().applyPut(key, value, seq);
-        return replicate(Constants.PUT, key, value, seq);
+    public long writeBatches() {
+        return writeBatches.get();
+    }
+
+    public long writeBatchOps() {
+        return writeBatchOps.get();
+    }
+
+    public CompletableFuture<ReplicationResult> handleClientPut(String key, String value) {
+        return submit(new PendingWrite(Constants.PUT, key, value, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<ReplicationResult> handleClientDelete(String key) {
+        return submit(new PendingWrite(Constants.DELETE, key, null, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<ReplicationResult> handleClientBatch(List<PendingWrite> writes) {
+        replicate(writes);
+        CompletableFuture<?>[] results = writes.stream().map(PendingWrite::result).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(results).thenApply(ignored -> {
+            long seq = 0L;
+            for (PendingWrite write : writes) {
+                ReplicationResult result = write.result().join();
+                if (!result.isOk()) {
+                    return result;
+                }
+                seq = Math.max(seq, result.seq());
+            }
+            return ReplicationResult.ok(seq);
+        });
     }
 
-    public ReplicationResult handleClientDelete(String key) {
-        long seq = context.nextSeq();
-        context.store().applyDelete(key, seq);
-        return replicate(Constants.DELETE, key, null, seq);
+    private CompletableFuture<ReplicationResult> submit(PendingWrite write) {
+        if (combiner == null || !combiner.offer(write)) {
+            replicate(List.of(write));
+        }
+        return write.result();
     }
 
-    private ReplicationResult replicate(String opType, String key, String value, long seq) {
+    void replicate(List<PendingWrite> writes) {
         ClusterState cluster = context.clusterState();
-        String leaderId = cluster.getLeaderNodeId();
-        if (leaderId == null || !leaderId.equals(context.nodeId())) {
-            return ReplicationResult.error(Constants.ERROR_NOT_LEADER);
+        Map<ShardInfo, List<PendingWrite>> byShard = new LinkedHashMap<>();
+        for (PendingWrite write : writes) {
+            byShard.computeIfAbsent(cluster.shardFor(write.key()), shard -> new ArrayList<>()).add(write);
+        }
+        for (Map.Entry<ShardInfo, List<PendingWrite>> group : byShard.entrySet()) {
+            CompletableFuture<ReplicationResult> result = replicateShard(cluster, group.getKey(), group.getValue());
+            for (PendingWrite write : group.getValue()) {
+                result.whenComplete((value, error) -> {
+                    if (error != null) {
+                        write.result().completeExceptionally(error);
+                    } else {
+                        write.result().complete(value);
+                    }
+                });
+            }
+        }
+    }
+
+    private CompletableFuture<ReplicationResult> replicateShard(ClusterState cluster, ShardInfo shard, List<PendingWrite> writes) {
+        if (!context.nodeId().equals(shard.leaderNodeId())) {
+            return CompletableFuture.completedFuture(ReplicationResult.error(Constants.ERROR_NOT_LEADER));
         }
-        int clusterSize = cluster.getNodes().size();
         int rf = cluster.getRf();
-        if (rf > clusterSize) {
-            return ReplicationResult.error(Constants.ERROR_NOT_ENOUGH_REPLICAS);
+        if (rf > shard.replicas().size()) {
+            return CompletableFuture.completedFuture(ReplicationResult.error(Constants.ERROR_NOT_ENOUGH_REPLICAS));
         }
         int followersRequired = Math.max(0, rf - 1);
-        List<NodeInfo> followers = new ArrayList<>();
-        for (NodeInfo node : cluster.nodesValues()) {
-            if (!node.nodeId().equals(context.nodeId())) {
-                followers.add(node);
-            }
-        }
+        List<NodeInfo> followers = cluster.followers(shard.shardId());
+        Set<String> voters = cluster.followerIds(shard.shardId());
         if (followersRequired > followers.size()) {
-            return ReplicationResult.error(Constants.ERROR_NOT_ENOUGH_REPLICAS);
+            return CompletableFuture.completedFuture(ReplicationResult.error(Constants.ERROR_NOT_ENOUGH_REPLICAS));
         }
-        String opId = UUID.randomUUID().toString();
-        OperationState state = new OperationState(opId, opType, key, value, seq, followers);
-        operations.put(opId, state);
-        LOG.info("Replicate opId=" + opId + " type=" + opType + " rf=" + rf + " mode=" + cluster.getReplicationMode());
-        sendReplication(state);
         ReplicationMode mode = cluster.getReplicationMode();
-        if (mode == ReplicationMode.ASYNC || followersRequired == 0) {
-            return ReplicationResult.ok();
-        }
-        int hotAcks = followersRequired;
-        if (mode == ReplicationMode.SEMI_SYNC) {
-            int k = cluster.getSemiSyncAcks();
-            hotAcks = Math.min(k, followersRequired);
-        }
-        boolean ok = state.waitForAcks(hotAcks, Constants.DEFAULT_TIMEOUT_MS);
-        if (!ok) {
-            LOG.info("Replicate opId=" + opId + " failed requiredAcks=" + hotAcks + " got=" + state.ackedCount());
-        }
-        return ok ? ReplicationResult.ok() : ReplicationResult.error(Constants.ERROR_NOT_ENOUGH_REPLICAS);
-    }
-
-    private void sendReplication(OperationState state) {
-        for (NodeInfo node : state.targets()) {
-            ObjectNode req = JsonUtil.object();
-            req.put(Constants.TYPE, state.opType());
-            req.put(Constants.OP_ID, state.opId());
-            req.put(Constants.ORIGIN_NODE_ID, context.nodeId());
-            req.put(Constants.KEY, state.key());
-            req.put(Constants.SEQ, state.seq());
-            if (Constants.PUT.equals(state.opType())) {
-                req.put(Constants.VALUE, state.value());
-                req.put(Constants.OP_TYPE, Constants.PUT);
-                req.put(Constants.TYPE, Constants.REPL_PUT);
-            } else {
-                req.put(Constants.OP_TYPE, Constants.DELETE);
-                req.put(Constants.TYPE, Constants.REPL_DELETE);
+        int hotAcks = 0;
+        if (mode == ReplicationMode.SYNC) {
+            hotAcks = followersRequired;
+        } else if (mode == ReplicationMode.SEMI_SYNC) {
+            hotAcks = Math.min(cluster.getSemiSyncAcks(), followersRequired);
+        }
+        int withinWindow = 0;
+        for (NodeInfo node : followers) {
+            if (inFlight(node.nodeId()) < Constants.REPL_WINDOW_OPS) {
+                withinWindow++;
+            }
+        }
+        if (withinWindow < hotAcks) {
+            for (NodeInfo node : followers) {
+                context.peers().channel(node).signal();
+            }
+            rejected.addAndGet(writes.size());
+            LOG.fine("Reject " + writes.size() + " writes: only " + withinWindow + " followers within the replication window");
+            return CompletableFuture.completedFuture(ReplicationResult.overloaded(Constants.RETRY_DELAY_MS));
+        }
+        OperationState state;
+        CompletableFuture<?>[] durables = new CompletableFuture<?>[writes.size()];
+        synchronized (operations) {
+            long firstSeq = 0L;
+            long seq = 0L;
+            for (int i = 0; i < writes.size(); i++) {
+                PendingWrite write = writes.get(i);
+                seq = context.nextSeq();
+                if (i == 0) {
+                    firstSeq = seq;
+                }
+                durables[i] = write.isPut()
+                        ? context.store().applyPut(write.key(), write.value(), seq)
+                        : context.store().applyDelete(write.key(), seq);
+                log.append(seq, new EncodedOp(new ReplOp(write.opType(), write.key(), seq, write.value())));
+            }
+            state = new OperationState(firstSeq, seq, hotAcks, voters);
+            if (hotAcks > 0) {
+                operations.put(state.seq(), state);
+            }
+        }
+        writeBatches.incrementAndGet();
+        writeBatchOps.addAndGet(writes.size());
+        String ops = state.firstSeq() == state.seq() ? "seq=" + state.seq() : "seq=" + state.firstSeq() + ".." + state.seq();
+        LOG.info("Replicate " + ops + " shard=" + shard.shardId() + " rf=" + rf + " mode=" + cluster.getReplicationMode());
+        for (NodeInfo node : followers) {
+            context.peers().channel(node).signal();
+        }
+        int requiredAcks = hotAcks;
+        CompletableFuture<Boolean> written = CompletableFuture.allOf(durables)
+                .handle((ignored, error) -> error == null)
+                .completeOnTimeout(false, Constants.DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        return state.acked()
+                .completeOnTimeout(false, Constants.DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .whenComplete((ok, error) -> operations.remove(state.seq()))
+                .thenCombine(written, (ok, stored) -> {
+                    if (!stored) {
+                        LOG.warning("Replicate " + ops + " failed to reach the WAL");
+                        return ReplicationResult.error(Constants.ERROR_STORAGE);
+                    }
+                    if (!ok) {
+                        LOG.info("Replicate " + ops + " failed requiredAcks=" + requiredAcks + " got=" + state.ackedCount());
+                    }
+                    return ok ? ReplicationResult.ok(state.seq()) : ReplicationResult.error(Constants.ERROR_NOT_ENOUGH_REPLICAS);
+                });
+    }
+
+    public void restartStream(long seqFloor, Set<String> followers) {
+        long seq;
+        synchronized (operations) {
+            seq = context.advanceSeq(seqFloor);
+            log.reset(seq);
+        }
+        LOG.info("Replication stream restarted at seq " + seq + " for " + followers);
+        for (NodeInfo node : context.clusterState().nodesValues()) {
+            if (followers.contains(node.nodeId())) {
+                context.peers().channel(node).rewind();
             }
-            NetworkClient.sendOneWay(node.host(), node.port(), req, Constants.DEFAULT_TIMEOUT_MS);
         }
     }
 
-    public void onAck(String opId, String fromNodeId) {
-        OperationState state = operations.get(opId);
-        if (state == null) {
+    public void onAck(ReplAck ack) {
+        String fromNodeId = ack.fromNodeId();
+        long ackedSeq = ack.ackedSeq();
+        if (fromNodeId == null || ack.epoch() != context.epoch()) {
+            return;
+        }
+        while (true) {
+            FollowerProgress previous = ackedByFollower.get(fromNodeId);
+            boolean restarted = previous != null && ack.followerEpoch() > previous.epoch();
+            if (previous != null && !restarted && (ack.followerEpoch() < previous.epoch() || ackedSeq <= previous.ackedSeq())) {
+                return;
+            }
+            FollowerProgress next = new FollowerProgress(ack.followerEpoch(), ackedSeq);
+            boolean installed = previous == null
+                    ? ackedByFollower.putIfAbsent(fromNodeId, next) == null
+                    : ackedByFollower.replace(fromNodeId, previous, next);
+            if (!installed) {
+                continue;
+            }
+            long from = previous == null ? 0L : previous.ackedSeq();
+            if (restarted) {
+                LOG.info("Follower " + fromNodeId + " restarted at seq " + ackedSeq + " (was " + from + "), restarting catch-up");
+                context.peers().rewind(fromNodeId);
+            }
+            if (ackedSeq > from) {
+                for (OperationState state : operations.subMap(from, false, ackedSeq, true).values()) {
+                    state.ack(fromNodeId);
+                }
+            }
+            LOG.fine("ACK from=" + fromNodeId + " ackedSeq=" + ackedSeq);
             return;
         }
-        state.ack(fromNodeId);
-        LOG.fine("ACK opId=" + opId + " from=" + fromNodeId + " count=" + state.ackedCount());
-    }
-
-    private void retryPending() {
-        for (OperationState state : operations.values()) {
-            for (NodeInfo node : state.unackedTargets()) {
-                ObjectNode req = JsonUtil.object();
-                req.put(Constants.OP_ID, state.opId());
-                req.put(Constants.ORIGIN_NODE_ID, context.nodeId());
-                req.put(Constants.KEY, state.key());
-                req.put(Constants.SEQ, state.seq());
-                if (Constants.PUT.equals(state.opType())) {
-                    req.put(Constants.VALUE, state.value());
-                    req.put(Constants.OP_TYPE, Constants.PUT);
-                    req.put(Constants.TYPE, Constants.REPL_PUT);
-                } else {
-                    req.put(Constants.OP_TYPE, Constants.DELETE);
-                    req.put(Constants.TYPE, Constants.REPL_DELETE);
+    }
+
+    public long ackedSeq(String followerId) {
+        FollowerProgress progress = ackedByFollower.get(followerId);
+        return progress == null ? 0L : progress.ackedSeq();
+    }
+
+    public long safeSeq() {
+        ClusterState cluster = context.clusterState();
+        long safe = log.lastSeq();
+        for (ShardInfo shard : cluster.effectiveShards()) {
+            if (context.nodeId().equals(shard.leaderNodeId())) {
+                for (NodeInfo node : cluster.followers(shard.shardId())) {
+                    safe = Math.min(safe, ackedSeq(node.nodeId()));
                 }
-                NetworkClient.sendOneWay(node.host(), node.port(), req, Constants.DEFAULT_TIMEOUT_MS);
             }
         }
+        return safe;
     }
 
-    private void cleanup() {
-        long cutoff = System.currentTimeMillis() - Constants.DEDUP_TTL_MS;
-        operations.entrySet().removeIf(entry -> entry.getValue().createdAt() < cutoff || entry.getValue().isSatisfied(context.clusterState()));
+    private record FollowerProgress(long epoch, long ackedSeq) {
     }
 
     private static final class OperationState {
-        private final String opId;
-        private final String opType;
-        private final String key;
-        private final String value;
+        private final long firstSeq;
         private final long seq;
-        private final long createdAt;
-        private final List<NodeInfo> targets;
         private final Set<String> acked = ConcurrentHashMap.newKeySet();
+        private final int requiredAcks;
+        private final Set<String> voters;
+        private final CompletableFuture<Boolean> ackedFuture = new CompletableFuture<>();
 
-        private OperationState(String opId, String opType, String key, String value, long seq, List<NodeInfo> targets) {
-            this.opId = opId;
-            this.opType = opType;
-            this.key = key;
-            this.value = value;
+        private OperationState(long firstSeq, long seq, int requiredAcks, Set<String> voters) {
+            this.firstSeq = firstSeq;
             this.seq = seq;
-            this.targets = targets;
-            this.createdAt = System.currentTimeMillis();
-        }
-
-        public String opId() {
-            return opId;
-        }
-
-        public String opType() {
-            return opType;
-        }
-
-        public String key() {
-            return key;
+            this.requiredAcks = requiredAcks;
+            this.voters = voters;
+            if (requiredAcks <= 0) {
+                ackedFuture.complete(true);
+            }
         }
 
-        public String value() {
-            return value;
+        public long firstSeq() {
+            return firstSeq;
         }
 
         public long seq() {
             return seq;
         }
 
-        public long createdAt() {
-            return createdAt;
-        }
-
-        public List<NodeInfo> targets() {
-            return targets;
-        }
-
-        public List<NodeInfo> unackedTargets() {
-            List<NodeInfo> list = new ArrayList<>();
-            for (NodeInfo node : targets) {
-                if (!acked.contains(node.nodeId())) {
-                    list.add(node);
-                }
-            }
-            return list;
-        }
-
         public void ack(String nodeId) {
-            acked.add(nodeId);
-        }
-
-        public boolean waitForAcks(int required, int timeoutMs) {
-            if (required <= 0) {
-                return true;
-            }
-            long deadline = System.currentTimeMillis() + timeoutMs;
-            while (System.currentTimeMillis() < deadline) {
-                if (acked.size() >= required) {
-                    return true;
-                }
-                try {
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+            if (voters.contains(nodeId) && acked.add(nodeId) && acked.size() >= requiredAcks) {
+                ackedFuture.complete(true);
             }
-            return acked.size() >= required;
         }
 
-        public boolean isSatisfied(ClusterState clusterState) {
-            int followersRequired = Math.max(0, clusterState.getRf() - 1);
-            return acked.size() >= followersRequired;
+        public CompletableFuture<Boolean> acked() {
+            return ackedFuture;
         }
 
         public int ackedCount() {
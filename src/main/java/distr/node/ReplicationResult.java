@@ -1,12 +1,18 @@
 package distr.node;
 
-public record ReplicationResult(boolean success, String errorCode) {
-    public static ReplicationResult ok() {
-        return new ReplicationResult(true, null);
+import distr.common.Constants;
+
+public record ReplicationResult(boolean success, String errorCode, long retryAfterMs, long seq) {
+    public static ReplicationResult ok(long seq) {
+        return new ReplicationResult(true, null, 0L, seq);
     }
 
     public static ReplicationResult error(String code) {
-        return new ReplicationResult(false, code);
+        return new ReplicationResult(false, code, 0L, 0L);
+    }
+
+    public static ReplicationResult overloaded(long retryAfterMs) {
+        return new ReplicationResult(false, Constants.ERROR_OVERLOADED, retryAfterMs, 0L);
     }
 
     public boolean isOk() {
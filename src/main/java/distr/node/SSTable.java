@@ -0,0 +1,367 @@
+package distr.node;
+
+import distr.common.Constants;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+public final class SSTable {
+    private static final Logger LOG = Logger.getLogger(SSTable.class.getName());
+    private static final int MAGIC = 0x53535442;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int FOOTER_BYTES = 5 * Long.BYTES + Integer.BYTES;
+    private static final int TOMBSTONE = -1;
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] firstKeys;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] checksums;
+    private final BloomFilter bloom;
+    private final long entries;
+    private final long tombstones;
+    private final long maxSeq;
+    private final long[] replaces;
+    private final long fileBytes;
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    private SSTable(long id, Path path, FileChannel channel, String[] firstKeys, long[] offsets, int[] lengths,
+                    int[] checksums, BloomFilter bloom, long entries, long tombstones, long maxSeq, long[] replaces,
+                    long fileBytes) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.firstKeys = firstKeys;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.checksums = checksums;
+        this.bloom = bloom;
+        this.entries = entries;
+        this.tombstones = tombstones;
+        this.maxSeq = maxSeq;
+        this.replaces = replaces;
+        this.fileBytes = fileBytes;
+    }
+
+    public static SSTable write(Path path, long id, Iterator<Map.Entry<String, ValueEntry>> sorted, long expectedKeys,
+                                long[] replaces) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        BloomFilter bloom = BloomFilter.create(expectedKeys, Constants.LSM_BLOOM_BITS_PER_KEY);
+        List<BlockHandle> blocks = new ArrayList<>();
+        ByteArrayOutputStream block = new ByteArrayOutputStream(Constants.LSM_BLOCK_BYTES * 2);
+        DataOutputStream blockOut = new DataOutputStream(block);
+        String firstKey = null;
+        long position = HEADER_BYTES;
+        long entries = 0;
+        long tombstones = 0;
+        long maxSeq = 0L;
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, Constants.NIO_BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            while (sorted.hasNext()) {
+                Map.Entry<String, ValueEntry> entry = sorted.next();
+                ValueEntry value = entry.getValue();
+                if (firstKey == null) {
+                    firstKey = entry.getKey();
+                }
+                writeBytes(blockOut, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                blockOut.writeLong(value.seq());
+                if (value.tombstone()) {
+                    blockOut.writeInt(TOMBSTONE);
+                    tombstones++;
+                } else {
+                    writeBytes(blockOut, value.value().getBytes(StandardCharsets.UTF_8));
+                }
+                bloom.add(entry.getKey());
+                maxSeq = Math.max(maxSeq, value.seq());
+                entries++;
+                if (block.size() >= Constants.LSM_BLOCK_BYTES) {
+                    position += flushBlock(out, block, firstKey, position, blocks);
+                    firstKey = null;
+                }
+            }
+            if (block.size() > 0) {
+                position += flushBlock(out, block, firstKey, position, blocks);
+            }
+            ByteArrayOutputStream meta = new ByteArrayOutputStream();
+            DataOutputStream metaOut = new DataOutputStream(meta);
+            metaOut.writeInt(blocks.size());
+            for (BlockHandle handle : blocks) {
+                writeBytes(metaOut, handle.firstKey().getBytes(StandardCharsets.UTF_8));
+                metaOut.writeLong(handle.offset());
+                metaOut.writeInt(handle.length());
+                metaOut.writeInt(handle.checksum());
+            }
+            bloom.writeTo(metaOut);
+            metaOut.writeInt(replaces.length);
+            for (long replaced : replaces) {
+                metaOut.writeLong(replaced);
+            }
+            CRC32 crc = new CRC32();
+            byte[] metaBytes = meta.toByteArray();
+            crc.update(metaBytes);
+            out.write(metaBytes);
+            out.writeLong(position);
+            out.writeLong(entries);
+            out.writeLong(tombstones);
+            out.writeLong(maxSeq);
+            out.writeLong(crc.getValue());
+            out.writeInt(MAGIC);
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(path, id);
+    }
+
+    public static SSTable open(Path path, long id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) {
+                throw new IOException("Not an SSTable: " + path);
+            }
+            ByteBuffer header = read(channel, 0L, HEADER_BYTES);
+            ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long metaOffset = footer.getLong();
+            long entries = footer.getLong();
+            long tombstones = footer.getLong();
+            long maxSeq = footer.getLong();
+            long metaChecksum = footer.getLong();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || footer.getInt() != MAGIC
+                    || metaOffset < HEADER_BYTES || size - FOOTER_BYTES - metaOffset > Integer.MAX_VALUE) {
+                throw new IOException("Not an SSTable: " + path);
+            }
+            ByteBuffer meta = read(channel, metaOffset, (int) (size - FOOTER_BYTES - metaOffset));
+            CRC32 crc = new CRC32();
+            crc.update(meta.duplicate());
+            if (crc.getValue() != metaChecksum) {
+                throw new IOException("SSTable index checksum mismatch: " + path);
+            }
+            int blockCount = meta.getInt();
+            String[] firstKeys = new String[blockCount];
+            long[] offsets = new long[blockCount];
+            int[] lengths = new int[blockCount];
+            int[] checksums = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                firstKeys[i] = readString(meta, meta.getInt());
+                offsets[i] = meta.getLong();
+                lengths[i] = meta.getInt();
+                checksums[i] = meta.getInt();
+            }
+            BloomFilter bloom = BloomFilter.readFrom(meta);
+            long[] replaces = new long[meta.getInt()];
+            for (int i = 0; i < replaces.length; i++) {
+                replaces[i] = meta.getLong();
+            }
+            return new SSTable(id, path, channel, firstKeys, offsets, lengths, checksums, bloom, entries, tombstones,
+                    maxSeq, replaces, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public long maxSeq() {
+        return maxSeq;
+    }
+
+    public long entries() {
+        return entries;
+    }
+
+    public long tombstones() {
+        return tombstones;
+    }
+
+    public long fileBytes() {
+        return fileBytes;
+    }
+
+    public long[] replaces() {
+        return replaces;
+    }
+
+    public boolean mightContain(String key) {
+        return bloom.mightContain(key);
+    }
+
+    public ValueEntry get(String key) throws IOException {
+        int block = blockFor(key);
+        if (block < 0) {
+            return null;
+        }
+        ByteBuffer buffer = readBlock(block);
+        ByteBuffer target = ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            int keyLength = buffer.getInt();
+            int keyStart = buffer.position();
+            boolean match = keyLength == target.capacity() && buffer.slice(keyStart, keyLength).mismatch(target) < 0;
+            buffer.position(keyStart + keyLength);
+            long seq = buffer.getLong();
+            int valueLength = buffer.getInt();
+            if (match) {
+                return valueLength == TOMBSTONE ? new ValueEntry(null, true, seq)
+                        : new ValueEntry(readString(buffer, valueLength), false, seq);
+            }
+            if (valueLength > 0) {
+                buffer.position(buffer.position() + valueLength);
+            }
+        }
+        return null;
+    }
+
+    public Iterator<Map.Entry<String, ValueEntry>> iterator() {
+        return new Iterator<>() {
+            private int block;
+            private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+            @Override
+            public boolean hasNext() {
+                while (!buffer.hasRemaining() && block < offsets.length) {
+                    try {
+                        buffer = readBlock(block++);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return buffer.hasRemaining();
+            }
+
+            @Override
+            public Map.Entry<String, ValueEntry> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String key = readString(buffer, buffer.getInt());
+                long seq = buffer.getLong();
+                int valueLength = buffer.getInt();
+                ValueEntry value = valueLength == TOMBSTONE ? new ValueEntry(null, true, seq)
+                        : new ValueEntry(readString(buffer, valueLength), false, seq);
+                return new AbstractMap.SimpleImmutableEntry<>(key, value);
+            }
+        };
+    }
+
+    public boolean retain() {
+        while (true) {
+            int current = refs.get();
+            if (current == 0) {
+                return false;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        if (refs.decrementAndGet() == 0) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to close SSTable " + path, e);
+            }
+        }
+    }
+
+    public void retire() throws IOException {
+        Files.deleteIfExists(path);
+        release();
+    }
+
+    private int blockFor(String key) {
+        int low = 0;
+        int high = firstKeys.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstKeys[mid].compareTo(key) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private ByteBuffer readBlock(int block) throws IOException {
+        ByteBuffer buffer = read(channel, offsets[block], lengths[block]);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("SSTable block checksum mismatch: " + path + " block " + block);
+        }
+        return buffer;
+    }
+
+    static int recordBytes(String key, ValueEntry value) {
+        int bytes = Integer.BYTES + key.getBytes(StandardCharsets.UTF_8).length + Long.BYTES + Integer.BYTES;
+        return value.tombstone() ? bytes : bytes + value.value().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int flushBlock(DataOutputStream out, ByteArrayOutputStream block, String firstKey, long offset,
+                                  List<BlockHandle> blocks) throws IOException {
+        byte[] bytes = block.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        out.write(bytes);
+        blocks.add(new BlockHandle(firstKey, offset, bytes.length, (int) crc.getValue()));
+        block.reset();
+        return bytes.length;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of SSTable");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private record BlockHandle(String firstKey, long offset, int length, int checksum) {
+    }
+}
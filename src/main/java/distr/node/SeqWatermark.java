@@ -0,0 +1,49 @@
+package distr.node;
+
+import distr.common.Constants;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class SeqWatermark {
+    private final long epoch;
+    private final SeqWindow received = new SeqWindow(Constants.SEQ_WINDOW_OPS);
+    private final SeqWindow applied = new SeqWindow(Constants.SEQ_WINDOW_OPS);
+    private final AtomicLong safeSeq = new AtomicLong();
+
+    public SeqWatermark(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    public SeqWindow.Mark claim(long seq) {
+        return received.add(seq);
+    }
+
+    public void skipTo(long seq) {
+        received.advanceTo(seq);
+    }
+
+    public void advanceTo(long seq) {
+        received.advanceTo(seq);
+        applied.advanceTo(seq);
+    }
+
+    public void markApplied(long seq) {
+        applied.add(seq);
+    }
+
+    public long contiguous() {
+        return applied.contiguous();
+    }
+
+    public void advanceSafeSeq(long seq) {
+        safeSeq.accumulateAndGet(Math.min(seq, contiguous()), Math::max);
+    }
+
+    public long safeSeq() {
+        return safeSeq.get();
+    }
+}
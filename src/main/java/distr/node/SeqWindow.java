@@ -0,0 +1,62 @@
+package distr.node;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class SeqWindow {
+    public enum Mark {
+        ADDED,
+        DUPLICATE,
+        AHEAD
+    }
+
+    private final AtomicLongArray slots;
+    private final AtomicLong contiguous = new AtomicLong();
+    private final int mask;
+
+    public SeqWindow(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Window capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public Mark add(long seq) {
+        while (true) {
+            long base = contiguous.get();
+            if (seq <= base) {
+                return Mark.DUPLICATE;
+            }
+            if (seq - base > slots.length()) {
+                return Mark.AHEAD;
+            }
+            int slot = (int) seq & mask;
+            long current = slots.get(slot);
+            if (current >= seq) {
+                return Mark.DUPLICATE;
+            }
+            if (slots.compareAndSet(slot, current, seq)) {
+                drain();
+                return Mark.ADDED;
+            }
+        }
+    }
+
+    public void advanceTo(long seq) {
+        contiguous.accumulateAndGet(seq, Math::max);
+        drain();
+    }
+
+    public long contiguous() {
+        return contiguous.get();
+    }
+
+    private void drain() {
+        long base = contiguous.get();
+        while (slots.get((int) (base + 1) & mask) == base + 1) {
+            contiguous.compareAndSet(base, base + 1);
+            base = contiguous.get();
+        }
+    }
+}
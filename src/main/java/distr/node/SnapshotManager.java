@@ -0,0 +1,205 @@
+package distr.node;
+
+import distr.common.Constants;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+public final class SnapshotManager {
+    private static final Logger LOG = Logger.getLogger(SnapshotManager.class.getName());
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private static final byte ENTRY = 1;
+    private static final byte END = 0;
+    private static final long MAP_CHUNK_BYTES = 1L << 30;
+    private final Path dir;
+    private final NodeStore store;
+    private final WriteAheadLog wal;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long snapshotSeq;
+    private long recordsAtSnapshot = -1L;
+
+    public SnapshotManager(Path dir, NodeStore store, WriteAheadLog wal) {
+        this.dir = dir;
+        this.store = store;
+        this.wal = wal;
+    }
+
+    public long snapshotSeq() {
+        return snapshotSeq;
+    }
+
+    public void start(long intervalMs) {
+        if (intervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public long load() throws IOException {
+        Path path = dir.resolve(Constants.SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            return 0L;
+        }
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedReader reader = new MappedReader(channel, size);
+            if (size < 8 + 1 + 24 || reader.getInt() != MAGIC || reader.getInt() != VERSION) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            CRC32 crc = new CRC32();
+            for (long offset = 0; offset < size - 8; offset += MAP_CHUNK_BYTES) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_CHUNK_BYTES, size - 8 - offset)));
+            }
+            if (channel.map(FileChannel.MapMode.READ_ONLY, size - 8, 8).getLong() != crc.getValue()) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            long count = 0;
+            while (reader.get() == ENTRY) {
+                String key = reader.getString();
+                boolean tombstone = reader.get() != 0;
+                long seq = reader.getLong();
+                String value = reader.getString();
+                store.restore(key, new ValueEntry(value, tombstone, seq));
+                count++;
+            }
+            long written = reader.getLong();
+            long maxSeq = reader.getLong();
+            if (written != count) {
+                throw new IOException("Snapshot entry count mismatch: " + count + " of " + written);
+            }
+            snapshotSeq = maxSeq;
+            LOG.info("Loaded snapshot with " + count + " entries maxSeq=" + maxSeq + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms");
+            return maxSeq;
+        }
+    }
+
+    public synchronized long snapshot() throws IOException {
+        long records = wal.records();
+        if (records == recordsAtSnapshot) {
+            return snapshotSeq;
+        }
+        wal.rotate().join();
+        long cut = wal.segment();
+        Path tmp = dir.resolve(Constants.SNAPSHOT_FILE + ".tmp");
+        long count = 0;
+        long maxSeq = 0L;
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), Constants.NIO_BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<String, ValueEntry> entry : store.entries()) {
+                ValueEntry value = entry.getValue();
+                out.writeByte(ENTRY);
+                writeString(out, entry.getKey());
+                out.writeByte(value.tombstone() ? 1 : 0);
+                out.writeLong(value.seq());
+                writeString(out, value.value());
+                maxSeq = Math.max(maxSeq, value.seq());
+                count++;
+            }
+            out.writeByte(END);
+            out.writeLong(count);
+            out.writeLong(maxSeq);
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(Constants.SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        wal.deleteSegmentsBefore(cut);
+        snapshotSeq = maxSeq;
+        recordsAtSnapshot = records;
+        LOG.info("Snapshot written with " + count + " entries maxSeq=" + maxSeq + ", WAL truncated before segment " + cut);
+        return maxSeq;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Snapshot failed in " + dir, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class MappedReader {
+        private final FileChannel channel;
+        private final long size;
+        private long base;
+        private MappedByteBuffer buffer;
+
+        private MappedReader(FileChannel channel, long size) throws IOException {
+            this.channel = channel;
+            this.size = size;
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(MAP_CHUNK_BYTES, size));
+        }
+
+        private byte get() throws IOException {
+            return ensure(1).get();
+        }
+
+        private int getInt() throws IOException {
+            return ensure(4).getInt();
+        }
+
+        private long getLong() throws IOException {
+            return ensure(8).getLong();
+        }
+
+        private String getString() throws IOException {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            ensure(length).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                base += buffer.position();
+                if (size - base < bytes) {
+                    throw new IOException("Snapshot truncated at offset " + base);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(Math.max(MAP_CHUNK_BYTES, bytes), size - base));
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package distr.node;
+
+public enum StorageEngine {
+    HEAP,
+    OFFHEAP,
+    LSM;
+
+    public static StorageEngine fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase()) {
+            case "heap" -> HEAP;
+            case "offheap" -> OFFHEAP;
+            case "lsm" -> LSM;
+            default -> null;
+        };
+    }
+
+    public String toWire() {
+        return switch (this) {
+            case HEAP -> "heap";
+            case OFFHEAP -> "offheap";
+            case LSM -> "lsm";
+        };
+    }
+}
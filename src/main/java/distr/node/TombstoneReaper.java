@@ -0,0 +1,71 @@
+package distr.node;
+
+import distr.common.ClusterState;
+import distr.common.ShardInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class TombstoneReaper {
+    private static final Logger LOG = Logger.getLogger(TombstoneReaper.class.getName());
+    private final NodeContext context;
+    private final long intervalMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tombstone-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Map<String, Long> lastSafeSeqs = Map.of();
+
+    public TombstoneReaper(NodeContext context, long intervalMs) {
+        this.context = context;
+        this.intervalMs = intervalMs;
+    }
+
+    public void start() {
+        if (intervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::reapQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized long reap() {
+        NodeStore store = context.store();
+        if (!store.shouldReap()) {
+            return 0L;
+        }
+        ClusterState cluster = context.clusterState();
+        Map<String, Long> safeSeqs = new HashMap<>();
+        for (ShardInfo shard : cluster.effectiveShards()) {
+            String leader = shard.leaderNodeId();
+            if (leader != null && !safeSeqs.containsKey(leader)) {
+                safeSeqs.put(leader, leader.equals(context.nodeId())
+                        ? context.replicationManager().safeSeq()
+                        : context.safeSeq(leader));
+            }
+        }
+        if (safeSeqs.equals(lastSafeSeqs)) {
+            return 0L;
+        }
+        long started = System.nanoTime();
+        long reaped = store.reapTombstones(key -> safeSeqs.getOrDefault(cluster.shardFor(key).leaderNodeId(), 0L));
+        lastSafeSeqs = safeSeqs;
+        if (reaped > 0) {
+            LOG.info("Reaped " + reaped + " tombstones up to safe seqs " + safeSeqs + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms, " + store.tombstones() + " remain");
+        }
+        return reaped;
+    }
+
+    private void reapQuietly() {
+        try {
+            reap();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Tombstone reaping failed", e);
+        }
+    }
+}
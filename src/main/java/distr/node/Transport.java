@@ -0,0 +1,24 @@
+package distr.node;
+
+public enum Transport {
+    BLOCKING,
+    NIO;
+
+    public static Transport fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase()) {
+            case "blocking" -> BLOCKING;
+            case "nio" -> NIO;
+            default -> null;
+        };
+    }
+
+    public String toWire() {
+        return switch (this) {
+            case BLOCKING -> "blocking";
+            case NIO -> "nio";
+        };
+    }
+}
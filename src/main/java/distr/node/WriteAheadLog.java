@@ -0,0 +1,334 @@
+package distr.node;
+
+import distr.common.Constants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public final class WriteAheadLog implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(WriteAheadLog.class.getName());
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int HEADER_BYTES = 8;
+    private final Path dir;
+    private final FsyncPolicy policy;
+    private final ArrayBlockingQueue<Pending> queue = new ArrayBlockingQueue<>(Constants.WAL_QUEUE_CAPACITY);
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile long segment;
+    private FileChannel channel;
+
+    public WriteAheadLog(Path dir, FsyncPolicy policy) throws IOException {
+        this.dir = dir;
+        this.policy = policy;
+        Files.createDirectories(dir);
+        this.writerThread = new Thread(this::writeLoop, "wal-" + dir.getFileName());
+        this.writerThread.setDaemon(true);
+    }
+
+    public FsyncPolicy policy() {
+        return policy;
+    }
+
+    public long records() {
+        return records.get();
+    }
+
+    public long syncs() {
+        return syncs.get();
+    }
+
+    public long segment() {
+        return segment;
+    }
+
+    public long replay(NodeStore store) throws IOException {
+        List<Long> segments = segments();
+        long maxSeq = 0L;
+        int replayed = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            try (FileChannel source = FileChannel.open(segmentPath(segments.get(i)), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = source.size();
+                long position = 0L;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (position + HEADER_BYTES <= size) {
+                    header.clear();
+                    source.read(header, position);
+                    header.flip();
+                    int length = header.getInt();
+                    int checksum = header.getInt();
+                    if (length <= 0 || length > Constants.MAX_FRAME_BYTES * 2 || position + HEADER_BYTES + length > size) {
+                        break;
+                    }
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    source.read(payload, position + HEADER_BYTES);
+                    if (checksum(payload.array()) != checksum) {
+                        break;
+                    }
+                    payload.flip();
+                    byte op = payload.get();
+                    long seq = payload.getLong();
+                    String key = readString(payload);
+                    String value = readString(payload);
+                    store.restore(key, op == OP_PUT ? new ValueEntry(value, false, seq) : new ValueEntry(null, true, seq));
+                    maxSeq = Math.max(maxSeq, seq);
+                    position += HEADER_BYTES + length;
+                    replayed++;
+                }
+                if (position < size) {
+                    LOG.warning("Truncating torn WAL tail at " + position + " of " + size + " bytes in " + segmentPath(segments.get(i)));
+                    source.truncate(position);
+                    source.force(true);
+                    if (!last) {
+                        break;
+                    }
+                }
+            }
+        }
+        segment = segments.isEmpty() ? 1L : segments.get(segments.size() - 1);
+        channel = openSegment(segment);
+        LOG.info("Replayed " + replayed + " WAL records from " + segments.size() + " segments in " + dir + " maxSeq=" + maxSeq);
+        if (!writerThread.isAlive()) {
+            writerThread.start();
+        }
+        return maxSeq;
+    }
+
+    public CompletableFuture<Void> appendPut(String key, String value, long seq) {
+        return enqueue(new Pending(encode(OP_PUT, key, value, seq), false, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<Void> appendDelete(String key, long seq) {
+        return enqueue(new Pending(encode(OP_DELETE, key, null, seq), false, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<Void> sync() {
+        return enqueue(new Pending(new byte[0], false, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<Void> rotate() {
+        return enqueue(new Pending(new byte[0], true, new CompletableFuture<>()));
+    }
+
+    public void deleteSegmentsBefore(long cut) throws IOException {
+        for (long index : segments()) {
+            if (index < cut) {
+                Files.deleteIfExists(segmentPath(index));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(Constants.DEFAULT_TIMEOUT_MS);
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to close WAL in " + dir, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Pending pending) {
+        if (!running) {
+            pending.future().completeExceptionally(new IOException("WAL closed"));
+            return pending.future();
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future().completeExceptionally(e);
+        }
+        return pending.future();
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        List<Pending> chunk = new ArrayList<>();
+        long lastSync = System.currentTimeMillis();
+        boolean dirty = false;
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(Constants.WAL_FSYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    continue;
+                }
+                queue.drainTo(batch);
+            }
+            try {
+                for (Pending pending : batch) {
+                    if (!pending.rotate()) {
+                        chunk.add(pending);
+                        continue;
+                    }
+                    dirty = commit(chunk, dirty, true);
+                    chunk.clear();
+                    rotateSegment();
+                    pending.future().complete(null);
+                }
+                long now = System.currentTimeMillis();
+                boolean due = policy == FsyncPolicy.INTERVAL && now - lastSync >= Constants.WAL_FSYNC_INTERVAL_MS;
+                dirty = commit(chunk, dirty, due);
+                if (due) {
+                    lastSync = now;
+                }
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "WAL write failed in " + dir, e);
+                for (Pending pending : batch) {
+                    pending.future().completeExceptionally(e);
+                }
+            }
+            chunk.clear();
+            batch.clear();
+        }
+    }
+
+    private boolean commit(List<Pending> chunk, boolean dirty, boolean forceDirty) throws IOException {
+        if (policy == FsyncPolicy.ALWAYS) {
+            for (Pending pending : chunk) {
+                if (write(List.of(pending))) {
+                    force();
+                }
+                pending.future().complete(null);
+            }
+            return false;
+        }
+        dirty |= write(chunk);
+        if (dirty && (policy == FsyncPolicy.GROUP || forceDirty)) {
+            force();
+            dirty = false;
+        }
+        for (Pending pending : chunk) {
+            pending.future().complete(null);
+        }
+        return dirty;
+    }
+
+    private boolean write(List<Pending> chunk) throws IOException {
+        int total = 0;
+        for (Pending pending : chunk) {
+            total += pending.record().length;
+        }
+        if (total == 0) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (Pending pending : chunk) {
+            buffer.put(pending.record());
+            if (pending.record().length > 0) {
+                records.incrementAndGet();
+            }
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return true;
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        syncs.incrementAndGet();
+    }
+
+    private void rotateSegment() throws IOException {
+        channel.force(false);
+        channel.close();
+        segment++;
+        channel = openSegment(segment);
+        LOG.info("WAL rotated to segment " + segment + " in " + dir);
+    }
+
+    private FileChannel openSegment(long index) throws IOException {
+        FileChannel opened = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        opened.position(opened.size());
+        return opened;
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(Constants.WAL_SEGMENT_PREFIX) && name.endsWith(Constants.WAL_SEGMENT_SUFFIX))
+                    .map(name -> name.substring(Constants.WAL_SEGMENT_PREFIX.length(), name.length() - Constants.WAL_SEGMENT_SUFFIX.length()))
+                    .filter(index -> !index.isEmpty() && index.chars().allMatch(Character::isDigit))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%s%012d%s", Constants.WAL_SEGMENT_PREFIX, index, Constants.WAL_SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(byte op, String key, String value, long seq) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 8 + 4 + keyBytes.length + 4 + (valueBytes == null ? 0 : valueBytes.length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.put(op);
+        buffer.putLong(seq);
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.putInt(valueBytes == null ? -1 : valueBytes.length);
+        if (valueBytes != null) {
+            buffer.put(valueBytes);
+        }
+        byte[] record = buffer.array();
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_BYTES, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private record Pending(byte[] record, boolean rotate, CompletableFuture<Void> future) {
+    }
+}
@@ -0,0 +1,64 @@
+package distr.node;
+
+import distr.common.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class WriteCombiner {
+    private static final Logger LOG = Logger.getLogger(WriteCombiner.class.getName());
+    private final ReplicationManager manager;
+    private final long windowNanos;
+    private final int maxOps;
+    private final ArrayBlockingQueue<PendingWrite> queue = new ArrayBlockingQueue<>(Constants.WRITE_QUEUE_CAPACITY);
+    private final Thread thread;
+
+    public WriteCombiner(ReplicationManager manager, long windowUs, int maxOps) {
+        this.manager = manager;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowUs);
+        this.maxOps = maxOps;
+        this.thread = new Thread(this::combineLoop, "write-combiner");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public boolean offer(PendingWrite write) {
+        return queue.offer(write);
+    }
+
+    private void combineLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxOps);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxOps) {
+                    queue.drainTo(batch, maxOps - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxOps || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                manager.replicate(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Write batch of " + batch.size() + " ops failed", e);
+                for (PendingWrite write : batch) {
+                    write.result().completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package distr.node;
+
+import distr.common.ClusterState;
+import distr.common.Constants;
+import distr.common.Message;
+import distr.common.NodeInfo;
+import distr.common.ReplAck;
+import distr.common.ReplBatch;
+import distr.common.ReplOp;
+import distr.common.ReplicationMode;
+import distr.common.ShardInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class ReplicationWindowTest {
+    private static final String LEADER = "n3";
+    private static final String FOLLOWER = "n4";
+    private static final long EPOCH = 1L;
+
+    @Test
+    void skippedShardOpsDoNotStallTheWindow() throws IOException {
+        NodeContext context = new NodeContext(FOLLOWER, "127.0.0.1", 0, NodeConfig.defaults());
+        context.updateCluster(current -> new ClusterState(1L,
+                List.of(new NodeInfo(LEADER, "127.0.0.1", 0), new NodeInfo(FOLLOWER, "127.0.0.1", 0)),
+                LEADER, ReplicationMode.ASYNC, 2, 1, 0, 0,
+                List.of(new ShardInfo(0, LEADER, List.of(LEADER)), new ShardInfo(1, LEADER, List.of(LEADER, FOLLOWER)))));
+        NodeServer server = new NodeServer(context);
+        ClusterState cluster = context.clusterState();
+        int held = 2 * Constants.SEQ_WINDOW_OPS;
+
+        List<ReplOp> ops = new ArrayList<>();
+        ops.add(new ReplOp(Constants.PUT, keysInShard(cluster, 0, 1).get(0), 1L, "v"));
+        List<String> keys = keysInShard(cluster, 1, held);
+        for (int i = 0; i < held; i++) {
+            ops.add(new ReplOp(Constants.PUT, keys.get(i), i + 2L, "v" + i));
+        }
+        ReplAck ack = null;
+        for (int from = 0; from < ops.size(); from += Constants.REPL_BATCH_MAX_OPS) {
+            List<ReplOp> chunk = ops.subList(from, Math.min(ops.size(), from + Constants.REPL_BATCH_MAX_OPS));
+            Message response = server.handleRequest(new ReplBatch(LEADER, EPOCH, from, 0L, List.copyOf(chunk), false)).join();
+            ack = assertInstanceOf(ReplAck.class, response);
+        }
+
+        assertEquals(ops.size(), ack.ackedSeq());
+        assertEquals(held, context.store().size());
+    }
+
+    private static List<String> keysInShard(ClusterState cluster, int shardId, int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "k" + i;
+            if (cluster.shardFor(key).shardId() == shardId) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}